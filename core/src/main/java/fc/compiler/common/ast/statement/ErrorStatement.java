@@ -0,0 +1,19 @@
+package fc.compiler.common.ast.statement;
+
+import fc.compiler.common.ast.StatementBase;
+import fc.compiler.common.token.Token;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * The place of a construct which failed to parse, in the partial AST after error recovery.
+ * @author FC
+ */
+@Getter @Setter @Accessors(fluent= true) @ToString
+public class ErrorStatement extends StatementBase {
+	String message;
+	Token token;        // the token where the error is found.
+	int skipped;        // the number of tokens skipped to recover.
+}
@@ -0,0 +1,119 @@
+package fc.compiler.common.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static fc.compiler.common.lexer.Constants.EOF;
+
+/**
+ * Code reader over 7-bit ASCII source code kept as bytes instead of chars,
+ * which halves the memory and the cache traffic of scanning.
+ * The bytes can be on heap or memory-mapped. Lexers see the same ch, bp, sp and lexeme() as CodeReader.
+ * Use {@link #of(ByteBuffer, Charset, String)} to fall back to CodeReader when non-ASCII bytes appear.
+ * @author FC
+ */
+public class AsciiCodeReader extends CodeReader {
+	protected ByteBuffer bytes;
+
+	public AsciiCodeReader(byte[] bytes) { this(ByteBuffer.wrap(bytes), null); }
+	public AsciiCodeReader(ByteBuffer bytes, String fileName) {
+		super(new char[0], bytes.limit(), fileName);
+		this.bytes = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);    // for word-at-a-time scanning.
+		this.lines = new LineMap(fileName, map -> map.scan(this.bytes, 0, this.limit, 0));
+
+		nextChar();     // MUST call this to start reading.
+	}
+
+	/**
+	 * Create AsciiCodeReader if the source code is pure ASCII in an ASCII compatible charset.
+	 * Otherwise, decode it into chars for CodeReader.
+	 */
+	public static CodeReader of(ByteBuffer bytes, Charset charset, String fileName) {
+		if (isAsciiCompatible(charset) && isAscii(bytes)) {
+			return new AsciiCodeReader(bytes, fileName);
+		}
+		CharBuffer chars = charset.decode(bytes.duplicate().position(0));
+		char[] code = new char[chars.remaining()];
+		chars.get(code);
+		return new CodeReader(code, fileName);
+	}
+
+	public static boolean isAsciiCompatible(Charset charset) {
+		return charset.equals(StandardCharsets.US_ASCII)
+				|| charset.equals(StandardCharsets.UTF_8)
+				|| charset.equals(StandardCharsets.ISO_8859_1);
+	}
+
+	/** check 8 bytes at a time if any byte has the highest bit set. */
+	public static boolean isAscii(ByteBuffer bytes) {
+		int i = 0;
+		int n = bytes.limit();
+		for (; i + 8 <= n; i += 8) {
+			if ((bytes.getLong(i) & 0x8080808080808080L) != 0) {
+				return false;
+			}
+		}
+		for (; i < n; i++) {
+			if (bytes.get(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public char nextChar() {
+		++bp;
+		ch = bp < limit ? (char) bytes.get(bp) : EOF;
+		return ch;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return bp + 1 < limit;
+	}
+
+	@Override
+	public char peekChar(int n) {
+		ch = bp + n < limit ? (char) bytes.get(bp + n) : EOF;
+		return ch;
+	}
+
+	@Override
+	public String lexeme() {
+		int end = Math.min(bp, limit);
+		if (sp >= end) {
+			return "";
+		} else if (bytes.hasArray()) {
+			return new String(bytes.array(), bytes.arrayOffset() + sp, end - sp, StandardCharsets.ISO_8859_1);
+		} else {
+			byte[] lexeme = new byte[end - sp];
+			bytes.get(sp, lexeme);
+			return new String(lexeme, StandardCharsets.ISO_8859_1);
+		}
+	}
+
+	@Override
+	public CharSequence lexemeView() {
+		int end = Math.min(bp, limit);
+		return sp < end ? LexemeView.of(bytes, sp, end - sp) : "";
+	}
+
+	@Override
+	public char lexemeChar(int index) {
+		return (char) bytes.get(sp + index);
+	}
+
+	@Override
+	protected int skipWhitespace(int from, int to) {
+		return runs.skipWhitespace(bytes, from, to);
+	}
+
+	@Override
+	protected int indexOfAny(int from, int to, char c1, char c2, char c3, char c4) {
+		return runs.indexOfAny(bytes, from, to, c1, c2, c3, c4);
+	}
+}
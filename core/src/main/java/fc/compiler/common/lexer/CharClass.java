@@ -0,0 +1,135 @@
+package fc.compiler.common.lexer;
+
+import java.util.Arrays;
+
+import static fc.compiler.common.lexer.Constants.*;
+
+/**
+ * Character class backed by a precomputed bitmap for ASCII characters.
+ * Other characters are tested by an optional predicate, e.g. Character::isJavaIdentifierPart,
+ * or by a precomputed bitmap of BMP for the predicates which are slow, e.g. by Unicode properties.
+ * Testing a character is a shift and a mask for ASCII, with no allocation.
+ * @author FC
+ */
+public final class CharClass implements CharPredicate {
+	public static final CharClass WHITESPACE = of(SPACE, TAB, FF);
+	public static final CharClass LINE_TERMINATOR = of(CR, LF);
+	public static final CharClass DEC_DIGIT = range('0', '9');
+	public static final CharClass OCT_DIGIT = range('0', '7');
+	public static final CharClass HEX_DIGIT = DEC_DIGIT.or(range('a', 'f')).or(range('A', 'F'));
+	public static final CharClass LETTER = range('a', 'z').or(range('A', 'Z'));
+	public static final CharClass LETTER_OR_DIGIT = LETTER.or(DEC_DIGIT);
+
+	private final long low;     // bits of characters 0-63
+	private final long high;    // bits of characters 64-127
+	private final CharPredicate extended;   // for non-ASCII characters. null if none.
+
+	private CharClass(long low, long high, CharPredicate extended) {
+		this.low = low;
+		this.high = high;
+		this.extended = extended;
+	}
+
+	public static CharClass of(char... chars) {
+		long low = 0, high = 0;
+		for (char c : chars) {
+			if (c < 64) low |= 1L << c;
+			else if (c < 128) high |= 1L << c;
+			else throw new IllegalArgumentException("Not an ASCII character: " + (int) c);
+		}
+		return new CharClass(low, high, null);
+	}
+
+	public static CharClass range(char from, char to) {
+		long low = 0, high = 0;
+		for (char c = from; c <= to; c++) {
+			if (c < 64) low |= 1L << c;
+			else if (c < 128) high |= 1L << c;
+			else throw new IllegalArgumentException("Not an ASCII character: " + (int) c);
+		}
+		return new CharClass(low, high, null);
+	}
+
+	/** precompute the ASCII bitmap from the predicate, and test other characters by the predicate. */
+	public static CharClass of(CharPredicate predicate) {
+		long low = 0, high = 0;
+		for (char c = 0; c < 128; c++) {
+			if (predicate.test(c)) {
+				if (c < 64) low |= 1L << c;
+				else high |= 1L << c;
+			}
+		}
+		return new CharClass(low, high, predicate);
+	}
+
+	/** precompute the bitmap of all characters of BMP from the predicate. */
+	public static CharClass bmp(CharPredicate predicate) {
+		return of(new BmpBitmap(predicate));
+	}
+
+	public CharClass or(CharClass other) {
+		CharPredicate ext = extended == null ? other.extended
+				: other.extended == null ? extended
+				: c -> extended.test(c) || other.extended.test(c);
+		return new CharClass(low | other.low, high | other.high, ext);
+	}
+
+	public CharClass or(char... chars) {
+		return or(of(chars));
+	}
+
+	/** @return true if no non-ASCII character belongs to this class. */
+	public boolean isAsciiOnly() {
+		return extended == null;
+	}
+
+	@Override
+	public boolean test(char ch) {
+		if (ch < 64) {
+			return (low & (1L << ch)) != 0;
+		} else if (ch < 128) {
+			return (high & (1L << ch)) != 0;
+		} else {
+			return extended != null && extended.test(ch);
+		}
+	}
+
+	/** equal if the same ASCII characters and the same predicate for others. */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CharClass)) return false;
+		CharClass other = (CharClass) o;
+		return low == other.low && high == other.high && extended == other.extended;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(low) * 31 + Long.hashCode(high);
+	}
+
+	/**
+	 * Bitmap of BMP in pages of 256 characters by the high byte.
+	 * The pages with no or all characters are shared.
+	 */
+	private static final class BmpBitmap implements CharPredicate {
+		private static final long[] NONE = new long[4];
+		private static final long[] ALL = {-1L, -1L, -1L, -1L};
+		private final long[][] pages = new long[256][];
+
+		BmpBitmap(CharPredicate predicate) {
+			for (int p = 0; p < 256; p++) {
+				long[] page = new long[4];
+				for (int c = p << 8, end = c + 256; c < end; c++) {
+					if (predicate.test((char) c)) page[(c >>> 6) & 3] |= 1L << c;
+				}
+				pages[p] = Arrays.equals(page, NONE) ? NONE : Arrays.equals(page, ALL) ? ALL : page;
+			}
+		}
+
+		@Override
+		public boolean test(char ch) {
+			return (pages[ch >>> 8][(ch >>> 6) & 3] & (1L << ch)) != 0;
+		}
+	}
+}
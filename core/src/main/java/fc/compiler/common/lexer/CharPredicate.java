@@ -0,0 +1,10 @@
+package fc.compiler.common.lexer;
+
+/**
+ * Predicate on primitive char, so testing a character never boxes it.
+ * @author FC
+ */
+@FunctionalInterface
+public interface CharPredicate {
+	boolean test(char ch);
+}
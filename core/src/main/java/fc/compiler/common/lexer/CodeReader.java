@@ -1,7 +1,6 @@
 package fc.compiler.common.lexer;
 
 import java.util.Arrays;
-import java.util.function.Predicate;
 
 import static fc.compiler.common.lexer.Constants.*;
 
@@ -9,8 +8,12 @@ import static fc.compiler.common.lexer.Constants.*;
  * @author FC
  */
 public class CodeReader {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;     // initial buffer size of the readers which fill by themselves.
+
 	// -- text of source code and buffer information. --
 	public char[] code;  // the copy of source code from file. also input buffer.
+	public int limit;    // the number of valid characters in code.
+	public int offset;   // the position of code[0] in the whole source. changed only when the buffer slides.
 	public char ch;      // the current CHaracter read in the source code.
 	public int bp = -1;  // Buffer Position/Pointer is the index of next char to be read.
 
@@ -18,26 +21,50 @@ public class CodeReader {
 	public int sp = 0;   // the Start Position of lexeme.
 
 	// -- position information for token: file, line, column --
-	public Position position;
 	public String fileName;
+	public LineMap lines;            // resolve the line and column of token lazily.
 	public int lineNo = 1;
 	public int lineStartPosition;    // the start position of one line in the whole file.
+	public NameTable names = new NameTable();   // share one among the readers of a compilation.
+	public RunScanner runs = RunScanner.get();  // the backend to scan runs in the buffer.
+	protected boolean keepsSource;              // code is the whole source, see keepsSource().
 
 	public CodeReader(char[] code) { this(code, null); }
 	public CodeReader(char[] code, String fileName) {
-		this.code = code;
-		this.fileName = fileName;
+		this(code, code.length, fileName);
+		this.lines = new LineMap(fileName, map -> map.scan(this.code, 0, this.limit, 0));
+		this.keepsSource = true;
 
 		nextChar();     // MUST call this to start reading.
 	}
 
+	/**
+	 * For subclasses which load the source code into the buffer by {@link #fill()}.
+	 * The subclass MUST call nextChar() to start reading after its own initialization.
+	 */
+	protected CodeReader(char[] buffer, int limit, String fileName) {
+		this.code = buffer;
+		this.limit = limit;
+		this.fileName = fileName;
+		this.lines = new LineMap(fileName);     // filled incrementally by ensure().
+	}
+
+	/**
+	 * @return true if code keeps the whole source from offset and each lexeme is code[sp, bp) as read,
+	 * so the lexemes can be referred to by offset and length instead of copied.
+	 * false for the readers which refill a window or skip gaps in a lexeme.
+	 */
+	public boolean keepsSource() {
+		return keepsSource;
+	}
+
 	/**
 	 * Read and return the next character.
 	 * @return next character.
 	 */
 	public char nextChar() {
 		++bp;
-		if (bp < code.length) {
+		if (bp < limit || ensure(0)) {
 			ch = code[bp];
 		} else {
 			ch = EOF;
@@ -46,18 +73,83 @@ public class CodeReader {
 	}
 
 	public boolean hasNext() {
-		return bp < code.length - 1;
+		return bp + 1 < limit || ensure(1);
 	}
 
 	public char peekChar(int n) {
-		ch = code[bp + n];
+		ch = (bp + n < limit || ensure(n)) ? code[bp + n] : EOF;
 		return ch;
 	}
 
-	public String lexeme() { return String.valueOf(Arrays.copyOfRange(code, sp, bp)); }
+	public String lexeme() {
+		int end = Math.min(bp, limit);
+		return sp < end ? String.valueOf(code, sp, end - sp) : "";
+	}
+
+	/** the current lexeme as a view of the buffer. the String is created only when asked. */
+	public CharSequence lexemeView() {
+		int end = Math.min(bp, limit);
+		return sp < end ? LexemeView.of(code, sp, end - sp) : "";
+	}
+
+	// -- the characters of current lexeme without creating a String. --
+	public int lexemeLength() {
+		return Math.max(Math.min(bp, limit) - sp, 0);
+	}
+
+	public char lexemeChar(int index) {
+		return code[sp + index];
+	}
+
+	// -- buffer management for the readers which do not hold the whole source code. --
+
+	/**
+	 * Make sure the character at bp + n is loaded into the buffer.
+	 * @return false if it is beyond the end of source code.
+	 */
+	protected boolean ensure(int n) {
+		while (bp + n >= limit) {
+			int loaded = offset + limit;
+			if (!fill()) {
+				return false;
+			}
+			lines.scan(code, loaded - offset, limit, offset);
+		}
+		return true;
+	}
+
+	/**
+	 * Load more characters into the buffer after limit.
+	 * Nothing to load by default because the whole source code is already in the buffer.
+	 * @return true if any character is loaded.
+	 */
+	protected boolean fill() {
+		return false;
+	}
+
+	/**
+	 * Discard the characters before the current lexeme to make room for fill(),
+	 * and grow the buffer if less than half of it is free.
+	 * The positions (bp, sp, lineStartPosition, offset) are shifted accordingly.
+	 */
+	protected void compact() {
+		int keep = Math.min(Math.min(sp, bp), limit);
+		if (keep > 0) {
+			System.arraycopy(code, keep, code, 0, limit - keep);
+			limit -= keep;
+			bp -= keep;
+			sp -= keep;
+			lineStartPosition -= keep;
+			offset += keep;
+		}
+		if (limit > code.length / 2) {
+			code = Arrays.copyOf(code, code.length * 2);
+		}
+	}
 
-	public void newPosition() {
-		position = new Position(fileName, lineNo, sp - lineStartPosition + 1);
+	/** @return the position of current lexeme. resolved by line map, so do not call it for each token. */
+	public Position position() {
+		return lines.position(offset + sp);
 	}
 
 	public boolean is(char c) { return this.ch == c; }
@@ -76,7 +168,7 @@ public class CodeReader {
 		return '\r' == ch || ch == '\n';
 	}
 
-	public boolean accept(Predicate<Character> predicate) {
+	public boolean accept(CharPredicate predicate) {
 		if (predicate.test(this.ch)) {
 			nextChar();
 			return true;
@@ -84,6 +176,20 @@ public class CodeReader {
 		return false;
 	}
 
+	/**
+	 * Consume the whole run of characters matching the predicate, e.g. a CharClass.
+	 * @return true if any character is consumed.
+	 */
+	public boolean skipWhile(CharPredicate predicate) {
+		if (!predicate.test(ch)) {
+			return false;
+		}
+		do {
+			nextChar();
+		} while (predicate.test(ch));
+		return true;
+	}
+
 	/**
 	 * Compare the current character with the given character.
 	 * If matching, read the next character.
@@ -119,18 +225,29 @@ public class CodeReader {
 	 * Compare the current and next characters with the characters in the string.
 	 */
 	public boolean accept(String s) {
-		int savedPosition = bp;
+		int mark = mark();
 		for (int i = 0; i < s.length(); i++) {
 			if (ch == s.charAt(i)) {
 				nextChar();
 			} else {
-				bp = savedPosition;
+				reset(mark);
 				return false;
 			}
 		}
 		return true;
 	}
 
+	/** @return the position of the current character to go back by {@link #reset(int)}. not changed by sliding the buffer. */
+	public int mark() {
+		return offset + bp;
+	}
+
+	/** Go back to the marked position, which must not be before the current lexeme. */
+	public void reset(int mark) {
+		bp = mark - offset - 1;
+		nextChar();
+	}
+
 	public boolean acceptLineTerminator() {
 		boolean hasCR = accept(CR);
 		boolean hasLF = accept(LF);
@@ -153,18 +270,40 @@ public class CodeReader {
 
 	/** Skip over ASCII white space characters. */
 	public void skipWhitespace() {
-		while (accept(SPACE, TAB, FF)) {
-			// accept() already read the next character
+		while (CharClass.WHITESPACE.test(ch)) {
+			moveTo(skipWhitespace(bp + 1, directLimit()));
 		}
 	}
 
-	/** Skip to end of line */
+	/** Skip to end of line, or to the end of source code if it is the last line. */
 	public void skipToEndOfLine() {
-		while (hasNext()) {
-			if (isEndOfLine()) {
-				break;
-			}
-			nextChar();
+		skipUntil(CR, LF, CR, LF);
+	}
+
+	/** Skip until the current character is one of c1 ~ c4 or the end of source code. */
+	public void skipUntil(char c1, char c2, char c3, char c4) {
+		while (ch != c1 && ch != c2 && ch != c3 && ch != c4 && bp < limit) {
+			moveTo(indexOfAny(bp + 1, directLimit(), c1, c2, c3, c4));
 		}
 	}
+
+	// -- runs are scanned directly in the buffer by RunScanner, and nextChar() crosses the end of the run. --
+	/** @return the end of the characters from bp which can be read directly from the buffer. */
+	protected int directLimit() {
+		return limit;
+	}
+
+	/** Move to the character at the index in the buffer, index <= directLimit(). */
+	protected void moveTo(int index) {
+		bp = index - 1;
+		nextChar();
+	}
+
+	protected int skipWhitespace(int from, int to) {
+		return runs.skipWhitespace(code, from, to);
+	}
+
+	protected int indexOfAny(int from, int to, char c1, char c2, char c3, char c4) {
+		return runs.indexOfAny(code, from, to, c1, c2, c3, c4);
+	}
 }
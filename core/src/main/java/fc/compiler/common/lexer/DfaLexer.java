@@ -0,0 +1,69 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.common.token.Token;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Table-driven lexer compiled from {@link TokenRules}.
+ * Each token is scanned by one loop over the transition table without calling any Lexer,
+ * unless its rule delegates to a procedural Lexer or no rule starts with the current character.
+ * It keeps no state while scanning, so one instance is shared by all lexers of a language.
+ * @author FC
+ */
+public class DfaLexer {
+	protected final byte[] classOf;         // the equivalence class of each character.
+	protected final int classCount;
+	protected final int[] transitions;      // [state * classCount + class] -> next state, -1 if none. 0 is start state.
+	protected final int[] accepts;          // the rule accepted by each state, -1 if none.
+	protected final String[] kinds;         // token kind of each rule.
+	protected final UnaryOperator<Token>[] actions;
+	protected final Lexer[] lexers;         // the lexer which a rule delegates to.
+
+	DfaLexer(byte[] classOf, int classCount, int[] transitions, int[] accepts,
+	         String[] kinds, UnaryOperator<Token>[] actions, Lexer[] lexers) {
+		this.classOf = classOf;
+		this.classCount = classCount;
+		this.transitions = transitions;
+		this.accepts = accepts;
+		this.kinds = kinds;
+		this.actions = actions;
+		this.lexers = lexers;
+	}
+
+	public int stateCount() {
+		return accepts.length;
+	}
+
+	/**
+	 * Scan the longest match from reader.sp.
+	 * @param lexer dispatches the characters which start no rule by its LexerMapper.
+	 */
+	public Token scan(CodeReader reader, LexerBase lexer) {
+		int state = transitions[classOf[reader.ch] & 0xFF];
+		if (state < 0) {
+			return lexer.dispatch(reader);
+		}
+
+		int start = reader.mark();
+		int rule = -1, end = start;
+		do {
+			reader.nextChar();
+			if (accepts[state] >= 0) {
+				rule = accepts[state];
+				end = reader.mark();
+			}
+			state = transitions[state * classCount + (classOf[reader.ch] & 0xFF)];
+		} while (state >= 0);
+
+		if (rule < 0 || lexers[rule] != null) {
+			reader.reset(start);
+			return rule < 0 ? lexer.dispatch(reader) : lexers[rule].scan(reader);
+		}
+		if (reader.mark() != end) {
+			reader.reset(end);
+		}
+		Token token = new Token(kinds[rule], reader).lexeme(reader.lexemeView());
+		return actions[rule] == null ? token : actions[rule].apply(token);
+	}
+}
@@ -0,0 +1,103 @@
+package fc.compiler.common.lexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+import static fc.compiler.common.lexer.EbcdicTable.*;
+
+/**
+ * Code reader over EBCDIC source code pulled from mainframe, e.g. Cp037 or Cp930 with national literals.
+ * The bytes are decoded through {@link EbcdicTable} inline while filling the buffer,
+ * so no separate transcoding pass is needed.
+ * The shift state of DBCS is tracked across refills. Shift-out and shift-in bytes are not passed to the lexer.
+ * @author FC
+ */
+public class EbcdicCodeReader extends CodeReader implements Closeable {
+	protected ReadableByteChannel input;
+	protected ByteBuffer bytes;
+	protected EbcdicTable table;
+	protected boolean dbcs;         // between shift-out and shift-in.
+	protected boolean endOfInput;
+
+	public EbcdicCodeReader(ReadableByteChannel input, Charset charset, String fileName) {
+		this(input, charset, fileName, DEFAULT_BUFFER_SIZE);
+	}
+	public EbcdicCodeReader(ReadableByteChannel input, Charset charset, String fileName, int bufferSize) {
+		super(new char[bufferSize], 0, fileName);
+		this.input = input;
+		this.table = EbcdicTable.of(charset);
+		this.bytes = ByteBuffer.allocate(Math.max(bufferSize, 2)).flip();
+
+		nextChar();     // MUST call this to start reading.
+	}
+
+	/** a copy, because the buffer slides. */
+	@Override
+	public CharSequence lexemeView() {
+		return lexeme();
+	}
+
+	@Override
+	protected boolean fill() {
+		compact();
+		int start = limit;
+		for (;;) {
+			decode();
+			if (limit > start || endOfInput) {
+				return limit > start;
+			}
+			readBytes();
+		}
+	}
+
+	protected void readBytes() {
+		bytes.compact();
+		try {
+			if (input.read(bytes) < 0) {
+				endOfInput = true;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		bytes.flip();
+	}
+
+	/** decode as many bytes as possible into the free space of the buffer. */
+	protected void decode() {
+		byte[] in = bytes.array();
+		int p = bytes.position();
+		int end = bytes.limit();
+		boolean hasDbcs = table.hasDbcs();
+		while (p < end && limit < code.length) {
+			int b = in[p] & 0xFF;
+			if (hasDbcs && b == SHIFT_OUT) {
+				dbcs = true;
+				p++;
+			} else if (hasDbcs && b == SHIFT_IN) {
+				dbcs = false;
+				p++;
+			} else if (!dbcs) {
+				code[limit++] = table.sbcs(b);
+				p++;
+			} else if (p + 1 < end) {
+				code[limit++] = table.dbcs(b, in[p + 1] & 0xFF);
+				p += 2;
+			} else if (endOfInput) {    // the last byte of a broken double-byte character.
+				code[limit++] = REPLACEMENT;
+				p++;
+			} else {                    // wait for the second byte.
+				break;
+			}
+		}
+		bytes.position(p);
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+}
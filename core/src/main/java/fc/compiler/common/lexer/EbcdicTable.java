@@ -0,0 +1,81 @@
+package fc.compiler.common.lexer;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Decoding table of an EBCDIC charset, e.g. Cp037 (single-byte) or Cp930 (mixed single-byte and DBCS).
+ * - Single-byte characters are decoded through a precomputed 256-entry table.
+ * - Double-byte characters (between shift-out and shift-in) are decoded through pages of 256 entries
+ *   indexed by the first byte. A page is computed at the first use because most sources use only a few pages.
+ * @author FC
+ */
+public class EbcdicTable {
+	public static final int SHIFT_OUT = 0x0E;
+	public static final int SHIFT_IN  = 0x0F;
+	public static final char REPLACEMENT = '\uFFFD';
+
+	private static final Map<Charset, EbcdicTable> tables = new ConcurrentHashMap<>();
+
+	protected final Charset charset;
+	protected final char[] sbcs = new char[256];
+	protected final AtomicReferenceArray<char[]> dbcsPages;     // null if the charset has no DBCS.
+
+	public static EbcdicTable of(Charset charset) {
+		return tables.computeIfAbsent(charset, EbcdicTable::new);
+	}
+
+	protected EbcdicTable(Charset charset) {
+		this.charset = charset;
+		for (int b = 0; b < 256; b++) {
+			String s = new String(new byte[] { (byte) b }, charset);
+			sbcs[b] = s.length() == 1 ? s.charAt(0) : REPLACEMENT;
+		}
+
+		// a DBCS charset decodes the double-byte space (0x4040) between shift-out and shift-in to one character.
+		String space = new String(new byte[] { SHIFT_OUT, 0x40, 0x40, SHIFT_IN }, charset);
+		dbcsPages = space.length() == 1 ? new AtomicReferenceArray<>(256) : null;
+	}
+
+	public boolean hasDbcs() { return dbcsPages != null; }
+
+	public char sbcs(int b) { return sbcs[b]; }
+
+	public char dbcs(int b1, int b2) {
+		char[] page = dbcsPages.get(b1);
+		if (page == null) {
+			page = loadPage(b1);
+		}
+		return page[b2];
+	}
+
+	protected synchronized char[] loadPage(int b1) {
+		if (dbcsPages.get(b1) != null) {
+			return dbcsPages.get(b1);
+		}
+
+		// decode the whole page at once: SO (b1, 0x00) (b1, 0x01) ... (b1, 0xFF) SI
+		byte[] bytes = new byte[2 + 2 * 256];
+		bytes[0] = SHIFT_OUT;
+		for (int b2 = 0; b2 < 256; b2++) {
+			bytes[1 + 2 * b2] = (byte) b1;
+			bytes[2 + 2 * b2] = (byte) b2;
+		}
+		bytes[bytes.length - 1] = SHIFT_IN;
+		String s = new String(bytes, charset);
+
+		char[] page = new char[256];
+		if (s.length() == 256) {
+			s.getChars(0, 256, page, 0);
+		} else {    // some pairs are not decoded to a single character. decode them one by one.
+			for (int b2 = 0; b2 < 256; b2++) {
+				String c = new String(new byte[] { SHIFT_OUT, (byte) b1, (byte) b2, SHIFT_IN }, charset);
+				page[b2] = c.length() == 1 ? c.charAt(0) : REPLACEMENT;
+			}
+		}
+		dbcsPages.set(b1, page);
+		return page;
+	}
+}
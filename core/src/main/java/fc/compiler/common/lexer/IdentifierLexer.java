@@ -5,8 +5,6 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 
-import java.util.function.Predicate;
-
 import static fc.compiler.common.token.TokenKind.IDENTIFIER;
 
 /**
@@ -14,8 +12,8 @@ import static fc.compiler.common.token.TokenKind.IDENTIFIER;
  */
 @Getter @Setter @Accessors(fluent= true)
 public class IdentifierLexer extends LexerBase {
-	private Predicate<Character> isIdentifierStart;
-	private Predicate<Character> isIdentifierPart;
+	private CharPredicate isIdentifierStart;
+	private CharPredicate isIdentifierPart;
 
 
 	@Override
@@ -23,7 +21,7 @@ public class IdentifierLexer extends LexerBase {
 		if (!reader.accept(isIdentifierStart)) {
 			return lexError(reader, "Invalid identifier starting character.");
 		}
-		while (reader.accept(isIdentifierPart)) ;
-		return new Token(IDENTIFIER, reader.position).lexeme(reader.lexeme());
+		reader.skipWhile(isIdentifierPart);
+		return new Token(IDENTIFIER, reader).lexeme(reader.lexemeView());
 	}
 }
@@ -0,0 +1,181 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenBuffer;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import static fc.compiler.common.token.TokenKind.EOF;
+
+/**
+ * Keep the tokens of a source file up to date with its edits, e.g. for an editor.
+ *
+ * While scanning, a checkpoint is recorded before the first token of each line:
+ * the token index, the position, the line counters of CodeReader and the state of lexer.
+ * For an edit, the tokens before the last checkpoint before the edit are kept,
+ * scanning restarts from that checkpoint, and stops at the first checkpoint after the edit
+ * which lines up with an old one at the same position and in the same lexer state.
+ * The old tokens from there are kept with their offsets shifted.
+ * @author FC
+ */
+@Accessors(fluent = true)
+public class IncrementalLexer {
+	protected final LexerBase lexer;
+	@Getter protected TokenBuffer tokens;
+	@Getter protected int relexed;          // the number of tokens scanned by the last edit.
+	protected LineMap lines;                // of the source after the last edit.
+
+	// -- checkpoints in the order of position. --
+	protected int[] tokenIndexes = new int[256];
+	protected int[] positions = new int[256];       // in the whole source code.
+	protected int[] lineNos = new int[256];
+	protected int[] lineStarts = new int[256];
+	protected Object[] states = new Object[256];
+	protected int count;
+
+	// -- the result of scan() which stops at an old checkpoint. --
+	protected boolean synced;
+	protected int syncCheckpoint;
+	protected int lineNoDelta;
+
+	public IncrementalLexer(LexerBase lexer) {
+		this.lexer = lexer;
+	}
+
+	/** scan all tokens of the reader. */
+	public TokenBuffer lex(CodeReader reader) {
+		tokens = new TokenBuffer(reader.limit / 4);
+		if (reader.keepsSource()) {
+			tokens.source(reader.code, reader.offset);
+		}
+		lines = reader.lines;
+		count = 0;
+		relexed = scan(reader, tokens, this, -1, 0, 0);
+		return tokens;
+	}
+
+	/**
+	 * Update the tokens for an edit of source code.
+	 * @param reader the reader of the source code after the edit, at its start.
+	 * @param offset the start of the edit.
+	 * @param removedLength the number of characters removed at offset.
+	 * @param insertedText the text inserted at offset.
+	 * @return the updated tokens.
+	 */
+	public TokenBuffer edit(CodeReader reader, int offset, int removedLength, CharSequence insertedText) {
+		int delta = insertedText.length() - removedLength;
+		int c = Arrays.binarySearch(positions, 0, count, offset);
+		c = Math.max((c >= 0 ? c : -c - 1) - 1, 0);     // the last checkpoint before offset.
+
+		lines = lines.edit(offset, removedLength, insertedText.length(), reader.code, reader.limit);
+		reader.lines = lines;       // not to load the line starts of the whole source again.
+		reader.reset(positions[c]);
+		reader.lineNo = lineNos[c];
+		reader.lineStartPosition = lineStarts[c];
+		lexer.restoreState(states[c]);
+
+		IncrementalLexer fresh = new IncrementalLexer(lexer);
+		TokenBuffer relexedTokens = new TokenBuffer(64);
+		if (reader.keepsSource()) {
+			tokens.source(reader.code, reader.offset);      // the kept trivia are shifted into the edited source.
+			relexedTokens.source(reader.code, reader.offset);
+		}
+		relexed = scan(reader, relexedTokens, fresh, offset + insertedText.length(), delta, c + 1);
+		int sync = fresh.synced ? fresh.syncCheckpoint : count;    // the old checkpoint lined up with.
+
+		int syncToken = sync < count ? tokenIndexes[sync] : tokens.size();
+		tokens.replace(tokenIndexes[c], syncToken, relexedTokens, delta);
+		tokens.lines(lines);        // even if no token is scanned, the old tokens are in the edited source.
+		replaceCheckpoints(c, sync, fresh, tokenIndexes[c], relexedTokens.size() - (syncToken - tokenIndexes[c]), delta);
+		return tokens;
+	}
+
+	/**
+	 * Scan tokens into the buffer and record the checkpoints into target.
+	 * @param syncFrom stop at the first line start from this position which lines up with a checkpoint of this lexer.
+	 *                 -1 not to stop until EOF.
+	 * @param delta the shift of positions after the edit.
+	 * @param old the first checkpoint of this lexer to line up with.
+	 * @return the number of scanned tokens.
+	 */
+	private int scan(CodeReader reader, TokenBuffer buffer, IncrementalLexer target, int syncFrom, int delta, int old) {
+		int lastLine = -1;
+		while (true) {
+			if (reader.lineNo != lastLine) {
+				int position = reader.offset + reader.bp;
+				Object state = lexer.saveState();
+				if (syncFrom >= 0 && position >= syncFrom) {
+					while (old < count && positions[old] < position - delta) old++;
+					if (old < count && positions[old] == position - delta && Objects.equals(states[old], state)) {
+						target.synced = true;
+						target.syncCheckpoint = old;
+						target.lineNoDelta = reader.lineNo - lineNos[old];
+						return buffer.size();
+					}
+				}
+				target.addCheckpoint(buffer.size(), position, reader.lineNo, reader.lineStartPosition, state);
+				lastLine = reader.lineNo;
+			}
+			Token t = lexer.scan(reader);
+			if (t == null) {
+				continue;       // lexical error reported.
+			}
+			buffer.add(t);
+			if (EOF.equals(t.kind())) {
+				return buffer.size();
+			}
+		}
+	}
+
+	private void addCheckpoint(int tokenIndex, int position, int lineNo, int lineStart, Object state) {
+		if (count == positions.length) {
+			int n = count * 2;
+			tokenIndexes = Arrays.copyOf(tokenIndexes, n);
+			positions = Arrays.copyOf(positions, n);
+			lineNos = Arrays.copyOf(lineNos, n);
+			lineStarts = Arrays.copyOf(lineStarts, n);
+			states = Arrays.copyOf(states, n);
+		}
+		tokenIndexes[count] = tokenIndex;
+		positions[count] = position;
+		lineNos[count] = lineNo;
+		lineStarts[count] = lineStart;
+		states[count] = state;
+		count++;
+	}
+
+	/** replace the checkpoints [from, to) by the ones of fresh, and shift the ones after them. */
+	private void replaceCheckpoints(int from, int to, IncrementalLexer fresh, int firstToken, int tokenDelta, int delta) {
+		int tail = count - to, n = fresh.count, newCount = from + n + tail;
+		if (newCount > positions.length) {
+			tokenIndexes = Arrays.copyOf(tokenIndexes, newCount);
+			positions = Arrays.copyOf(positions, newCount);
+			lineNos = Arrays.copyOf(lineNos, newCount);
+			lineStarts = Arrays.copyOf(lineStarts, newCount);
+			states = Arrays.copyOf(states, newCount);
+		}
+		System.arraycopy(tokenIndexes, to, tokenIndexes, from + n, tail);
+		System.arraycopy(positions, to, positions, from + n, tail);
+		System.arraycopy(lineNos, to, lineNos, from + n, tail);
+		System.arraycopy(lineStarts, to, lineStarts, from + n, tail);
+		System.arraycopy(states, to, states, from + n, tail);
+		for (int i = 0; i < n; i++) {
+			tokenIndexes[from + i] = fresh.tokenIndexes[i] + firstToken;
+			positions[from + i] = fresh.positions[i];
+			lineNos[from + i] = fresh.lineNos[i];
+			lineStarts[from + i] = fresh.lineStarts[i];
+			states[from + i] = fresh.states[i];
+		}
+		int lineNoDelta = fresh.synced ? fresh.lineNoDelta : 0;
+		for (int i = from + n; i < newCount; i++) {
+			tokenIndexes[i] += tokenDelta;
+			positions[i] += delta;
+			lineNos[i] += lineNoDelta;
+			lineStarts[i] += delta;
+		}
+		count = newCount;
+	}
+}
@@ -0,0 +1,162 @@
+package fc.compiler.common.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive keyword lookup on the current lexeme [sp, bp) of CodeReader without allocation.
+ *
+ * The keywords are placed by a perfect hash (hash and displace):
+ * two hashes h1 and h2 are computed in one pass over the lexeme,
+ * h2 selects a bucket, and the displacement d of the bucket places the keyword at slot (h1 + d * h2).
+ * The displacements are searched at construction so that no two keywords share a slot,
+ * so a lookup is one pass of hashing and one comparison.
+ * Letters are compared in ASCII upper case.
+ * @author FC
+ */
+public class KeywordMatcher {
+	protected final char[][] keywords;      // upper case keyword of each slot, null if empty.
+	protected final String[] texts;         // the keyword in the map.
+	protected final String[] kinds;         // token kind of the keyword.
+	protected final int[] displacements;    // by bucket.
+	protected final int mask;
+	protected final int bucketMask;
+
+	/** @param keywords map from the text of keyword to its token kind. */
+	public KeywordMatcher(Map<String, String> keywords) {
+		int size = Integer.highestOneBit(Math.max(keywords.size(), 4) * 2 - 1) * 2;
+		int buckets = size / 4;
+		this.mask = size - 1;
+		this.bucketMask = buckets - 1;
+		this.keywords = new char[size][];
+		this.texts = new String[size];
+		this.kinds = new String[size];
+		this.displacements = new int[buckets];
+
+		List<List<String>> bucketKeys = new ArrayList<>();
+		for (int i = 0; i < buckets; i++) bucketKeys.add(new ArrayList<>());
+		for (String text : keywords.keySet()) {
+			bucketKeys.get(bucket(hash2(text))).add(text);
+		}
+		Integer[] order = new Integer[buckets];
+		Arrays.setAll(order, i -> i);
+		Arrays.sort(order, (a, b) -> bucketKeys.get(b).size() - bucketKeys.get(a).size());   // larger buckets first.
+
+		for (int b : order) {
+			List<String> keys = bucketKeys.get(b);
+			if (keys.isEmpty()) break;
+			int d = 0;
+			while (!place(keys, d, keywords, false)) {
+				if (++d > size * 64) throw new IllegalStateException("no perfect hash for keywords " + keys);
+			}
+			place(keys, d, keywords, true);
+			displacements[b] = d;
+		}
+	}
+
+	/** check if the keys of one bucket fit in free and distinct slots with the displacement, and put them if so. */
+	private boolean place(List<String> keys, int d, Map<String, String> map, boolean put) {
+		int[] slots = new int[keys.size()];
+		for (int i = 0; i < slots.length; i++) {
+			String text = keys.get(i);
+			int slot = slot(hash1(text), hash2(text), d);
+			if (keywords[slot] != null) return false;
+			for (int j = 0; j < i; j++) {
+				if (slots[j] == slot) return false;
+			}
+			slots[i] = slot;
+			if (put) {
+				keywords[slot] = upperCase(text).toCharArray();
+				texts[slot] = text;
+				kinds[slot] = map.get(text);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Find the current lexeme of the reader.
+	 * @return the slot of matched keyword, or -1 if not a keyword.
+	 */
+	public int find(CodeReader reader) {
+		int length = reader.lexemeLength();
+		int h1 = 0, h2 = 0;
+		for (int i = 0; i < length; i++) {
+			char c = upperCase(reader.lexemeChar(i));
+			h1 = h1 * 31 + c;
+			h2 = h2 * 0x01000193 ^ c;
+		}
+		int slot = slot(h1, h2, displacements[bucket(h2)]);
+		char[] keyword = keywords[slot];
+		if (keyword == null || keyword.length != length) {
+			return -1;
+		}
+		for (int i = 0; i < length; i++) {
+			if (upperCase(reader.lexemeChar(i)) != keyword[i]) {
+				return -1;
+			}
+		}
+		return slot;
+	}
+
+	/** @return the token kind of current lexeme, or null if not a keyword. */
+	public String kind(CodeReader reader) {
+		int slot = find(reader);
+		return slot < 0 ? null : kinds[slot];
+	}
+
+	public String kind(int slot) { return kinds[slot]; }
+	public String text(int slot) { return texts[slot]; }
+
+	/** @return true if the current lexeme is the same as the keyword text including case. */
+	public boolean isExact(CodeReader reader, int slot) {
+		String text = texts[slot];
+		for (int i = 0; i < text.length(); i++) {
+			if (reader.lexemeChar(i) != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash1(String text) {
+		int h = 0;
+		for (int i = 0; i < text.length(); i++) h = h * 31 + upperCase(text.charAt(i));
+		return h;
+	}
+
+	private static int hash2(String text) {
+		int h = 0;
+		for (int i = 0; i < text.length(); i++) h = h * 0x01000193 ^ upperCase(text.charAt(i));
+		return h;
+	}
+
+	private int bucket(int h2) {
+		return mix(h2) & bucketMask;
+	}
+
+	private int slot(int h1, int h2, int d) {
+		return (mix(h1) + d * (mix(h2 ^ 0x5bd1e995) | 1)) & mask;
+	}
+
+	/** the finalizer of MurmurHash3. */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+
+	private static char upperCase(char c) {
+		return 'a' <= c && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+	}
+
+	private static String upperCase(String text) {
+		char[] chars = text.toCharArray();
+		for (int i = 0; i < chars.length; i++) chars[i] = upperCase(chars[i]);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,64 @@
+package fc.compiler.common.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A lexeme as a view of the buffer of CodeReader, which creates its String only on first toString().
+ * Trivia tokens dropped by TokenReader never copy their characters.
+ * Valid only while the buffer is not changed, so readers which slide their buffer must not create it.
+ * @author FC
+ */
+public abstract class LexemeView implements CharSequence {
+	protected final int start;
+	protected final int length;
+	protected String string;
+
+	protected LexemeView(int start, int length) {
+		this.start = start;
+		this.length = length;
+	}
+
+	public static LexemeView of(char[] code, int start, int length) {
+		return new LexemeView(start, length) {
+			@Override
+			public char charAt(int index) { return code[start + index]; }
+			@Override
+			protected String newString() { return new String(code, start, length); }
+		};
+	}
+
+	/** @param bytes the ASCII bytes. */
+	public static LexemeView of(ByteBuffer bytes, int start, int length) {
+		return new LexemeView(start, length) {
+			@Override
+			public char charAt(int index) { return (char) bytes.get(start + index); }
+			@Override
+			protected String newString() {
+				byte[] lexeme = new byte[length];
+				for (int i = 0; i < length; i++) lexeme[i] = bytes.get(start + i);
+				return new String(lexeme, StandardCharsets.ISO_8859_1);
+			}
+		};
+	}
+
+	protected abstract String newString();
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		return toString().substring(from, to);
+	}
+
+	@Override
+	public String toString() {
+		if (string == null) {
+			string = newString();
+		}
+		return string;
+	}
+}
@@ -2,6 +2,7 @@ package fc.compiler.common.lexer;
 
 import fc.compiler.common.token.Token;
 import fc.compiler.common.token.TokenKind;
+import fc.compiler.common.token.TriviaTable;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -19,42 +20,93 @@ import static fc.compiler.common.token.TokenKind.*;
 @Slf4j @Getter @Setter @Accessors(fluent = true)
 public class LexerBase implements Lexer {
 	protected LexerMapper mapper;
+	protected DfaLexer dfa;     // compiled token rules tried before the mapper. null to scan by the mapper only.
+	protected boolean skipTrivia;   // skip white spaces, line terminators and comments without tokens.
+	protected TriviaTable trivia;   // the skipped ranges in the skipTrivia mode. null not to record.
+	protected boolean switchDispatch;   // dispatch by the switch of the language instead of the mapper.
 
 	@Override
 	public Token scan(CodeReader reader) {
+		if (skipTrivia) {
+			skipAllTrivia(reader);
+		}
 		reader.sp = reader.bp;
-		reader.newPosition();
+		return dfa != null ? dfa.scan(reader, this) : dispatch(reader);
+	}
+
+	/**
+	 * The state of this lexer between two tokens, to restart scanning there, e.g. by IncrementalLexer.
+	 * Two states must be equal if scanning from them gives the same tokens. None by default.
+	 */
+	public Object saveState() {
+		return null;
+	}
+
+	public void restoreState(Object state) {
+	}
+
+	/** skip all trivia at the current character, and record their ranges into the trivia table if any. */
+	protected void skipAllTrivia(CodeReader reader) {
+		while (true) {
+			reader.sp = reader.bp;
+			String kind = skipTriviaToken(reader);
+			if (kind == null) {
+				return;
+			} else if (trivia != null) {
+				trivia.add(kind, reader);
+			}
+		}
+	}
+
+	/**
+	 * Skip one trivia token at the current character. Override it for the comments of the language.
+	 * @return the token kind of skipped trivia, or null if the current character does not start trivia.
+	 */
+	protected String skipTriviaToken(CodeReader reader) {
+		if (CharClass.WHITESPACE.test(reader.ch)) {
+			reader.skipWhitespace();
+			return WHITE_SPACES;
+		} else if (reader.acceptLineTerminator()) {
+			return LINE_TERMINATOR;
+		}
+		return null;
+	}
+
+	/** scan by the lexer mapped to the current character. An unmapped character is skipped as an error token. */
+	protected Token dispatch(CodeReader reader) {
 		Lexer lexer = mapper.getLexer(reader.ch);
 		if (lexer != null) {
 			Token token = lexer.scan(reader);
 			return token;
 		} else {
-			return lexError(reader, "Unsupported lexeme '" + reader.ch + "' @ " + reader.position);
+			String message = "Unsupported lexeme '" + reader.ch + "' @ " + reader.position();
+			reader.nextChar();
+			return lexError(reader, message);
 		}
 	}
 
 	protected static Token lexError(CodeReader reader, String s) {
 		log.error(s);
-		return new Token(ERROR, reader.position).lexeme(reader.lexeme());
+		return new Token(ERROR, reader).lexeme(reader.lexemeView());
 	}
 
 	protected static Token scanDummy(CodeReader reader) {
 		reader.nextChar();
-		return new Token(TokenKind.ERROR, reader.position).lexeme(reader.lexeme());
+		return new Token(TokenKind.ERROR, reader).lexeme(reader.lexemeView());
 	}
 
 	public static Token scanEOF(CodeReader reader) {
 		reader.nextChar();
-		return new Token(EOF, reader.position);
+		return new Token(EOF, reader);
 	}
 	public static Token scanWhiteSpaces(CodeReader reader) {
 		reader.skipWhitespace();
-		return new Token(WHITE_SPACES, reader.position).lexeme(reader.lexeme());    // by default, white spaces are ignored.
+		return new Token(WHITE_SPACES, reader).lexeme(reader.lexemeView());    // by default, white spaces are ignored.
 	}
 
 	public static Token scanLineTerminator(CodeReader reader) {
 		if (reader.acceptLineTerminator()) {
-			return new Token(LINE_TERMINATOR, reader.position).lexeme(reader.lexeme());
+			return new Token(LINE_TERMINATOR, reader).lexeme(reader.lexemeView());
 		}
 		return null;
 	}
@@ -73,7 +125,7 @@ public class LexerBase implements Lexer {
 
 	protected static Token scanSingleCharToken(CodeReader reader, String kind) {
 		reader.nextChar();
-		return new Token(kind, reader.position).lexeme(reader.lexeme());
+		return new Token(kind, reader).lexeme(reader.lexemeView());
 	}
 
 	public static Token scanSingleQuote(CodeReader reader) {
@@ -89,15 +141,14 @@ public class LexerBase implements Lexer {
 	}
 	public static Token scanStringLiteral(CodeReader reader, char quote) {
 		reader.accept(quote);
-		while (reader.ch != quote
-				&& reader.ch != CR
-				&& reader.ch != LF
-				&& reader.ch != Constants.EOF) {
+		reader.skipUntil(quote, '\\', CR, LF);
+		while (reader.ch == '\\') {
 			scanEscapedChar(reader);
 			reader.nextChar();
+			reader.skipUntil(quote, '\\', CR, LF);
 		}
 		if (reader.accept(quote)) {
-			return new Token(STRING_LITERAL, reader.position).lexeme(reader.lexeme());
+			return new Token(STRING_LITERAL, reader).lexeme(reader.lexemeView());
 		} else {
 			lexError(reader, "invalid string literal: " + reader.lexeme());
 			return null;
@@ -112,7 +163,7 @@ public class LexerBase implements Lexer {
 		} else {
 			scanEscapedChar(reader);
 			if (reader.accept(quote)) {
-				return new Token(CHAR_LITERAL, reader.position).lexeme(reader.lexeme());
+				return new Token(CHAR_LITERAL, reader).lexeme(reader.lexemeView());
 			} else {
 				return lexError(reader, "Unclosed character literal.");
 			}
@@ -130,7 +181,7 @@ public class LexerBase implements Lexer {
 
 	public static Token scanLineComment(CodeReader reader) {
 		reader.skipToEndOfLine();
-		return new Token(LINE_COMMENT, reader.position).lexeme(reader.lexeme());
+		return new Token(LINE_COMMENT, reader).lexeme(reader.lexemeView());
 	}
 
 }
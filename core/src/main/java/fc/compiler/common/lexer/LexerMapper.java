@@ -3,32 +3,102 @@ package fc.compiler.common.lexer;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Map between character and lexer.
+ * ASCII characters are looked up in one array. Other characters of BMP are looked up
+ * in a two-level page table: the high byte selects a page of 256 lexers, allocated only when mapped.
+ * So a range or a whole Unicode block, e.g. CJK ideographs, is mapped without one entry per character in a map,
+ * and looked up by two array loads. Pages wholly mapped to one lexer share one array until changed.
  * @author FC
  */
 public class LexerMapper {
 	@Getter @Setter
 	protected Lexer defaultLexer;
 	protected Lexer[] asciiLexers = new Lexer[128];         // for ASCII characters.
-	protected Map<Character, Lexer> extendedLexers = new HashMap<>();  // for other characters especially unicode.
+	protected Lexer[][] pages = new Lexer[256][];           // for other characters especially unicode, by high byte.
+	protected boolean[] sharedPages = new boolean[256];     // copy the page before changing it.
 
-	public Lexer getLexer(Character ch) {
+	public Lexer getLexer(char ch) {
 		if (ch < 128) {
 			return asciiLexers[ch];
 		} else {
-			return extendedLexers.get(ch);
+			Lexer[] page = pages[ch >>> 8];
+			return page == null ? null : page[ch & 0xFF];
 		}
 	}
 
-	public void mapLexer(Character ch, Lexer lexer) {
+	public void mapLexer(char ch, Lexer lexer) {
 		if (ch < 128) {
 			asciiLexers[ch] = lexer;
 		} else {
-			extendedLexers.put(ch, lexer);
+			int p = ch >>> 8;
+			Lexer[] page = pages[p];
+			if (page == null) {
+				page = pages[p] = new Lexer[256];
+			} else if (sharedPages[p]) {
+				page = pages[p] = page.clone();
+				sharedPages[p] = false;
+			}
+			page[ch & 0xFF] = lexer;
+		}
+	}
+
+	/** map the characters from and to inclusive. the unmapped pages wholly in the range share one page. */
+	public void mapLexer(char from, char to, Lexer lexer) {
+		Lexer[] uniform = null;
+		for (int c = from; c <= to; ) {
+			int p = c >>> 8;
+			if (c >= 128 && (c & 0xFF) == 0 && c + 255 <= to && pages[p] == null) {
+				if (uniform == null) {
+					uniform = new Lexer[256];
+					Arrays.fill(uniform, lexer);
+				}
+				pages[p] = uniform;
+				sharedPages[p] = true;
+				c += 256;
+			} else {
+				mapLexer((char) c, lexer);
+				c++;
+			}
+		}
+	}
+
+	/**
+	 * map all characters of the block in BMP.
+	 * The blocks start at multiples of 16, so the block is found by testing one character in 16.
+	 */
+	public void mapLexer(Character.UnicodeBlock block, Lexer lexer) {
+		int from = 0;
+		while (from <= Character.MAX_VALUE && Character.UnicodeBlock.of(from) != block) from += 16;
+		int to = from;
+		while (to <= Character.MAX_VALUE && Character.UnicodeBlock.of(to) == block) to += 16;
+		if (from < to) {
+			mapLexer((char) from, (char) (to - 1), lexer);
+		}
+	}
+
+	/** map all non-ASCII characters of BMP which match the predicate, e.g. Character::isJavaIdentifierStart. */
+	public void mapLexer(CharPredicate predicate, Lexer lexer) {
+		Lexer[] uniform = null;     // the page shared by the pages wholly matched.
+		for (int p = 0; p < pages.length; p++) {
+			int from = Math.max(p << 8, 128), to = (p << 8) + 256, matched = 0;
+			for (int c = from; c < to; c++) {
+				if (predicate.test((char) c)) matched++;
+			}
+			if (matched == 256 && pages[p] == null) {
+				if (uniform == null) {
+					uniform = new Lexer[256];
+					Arrays.fill(uniform, lexer);
+				}
+				pages[p] = uniform;
+				sharedPages[p] = true;
+			} else if (matched > 0) {
+				for (int c = from; c < to; c++) {
+					if (predicate.test((char) c)) mapLexer((char) c, lexer);
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,150 @@
+package fc.compiler.common.lexer;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static fc.compiler.common.lexer.Constants.CR;
+import static fc.compiler.common.lexer.Constants.LF;
+
+/**
+ * The start positions of all lines in one source file.
+ * Tokens record their positions as plain offsets in the whole source,
+ * and line and column are resolved by binary search only when they are asked.
+ *
+ * The line starts are loaded either
+ * - lazily at the first query by the loader, when the whole source code is kept in memory, or
+ * - incrementally by the reader while filling its buffer, when only a window of the source code is kept.
+ * A line ends with CR, LF or CR LF.
+ * @author FC
+ */
+@Accessors(fluent = true)
+public class LineMap {
+	@Getter @Setter protected String fileName;
+	protected int[] lineStarts = new int[64];
+	protected int lineCount = 1;    // the first line always starts at 0.
+	protected boolean pendingCR;    // the last scanned character is CR.
+	protected Consumer<LineMap> loader;
+
+	public LineMap(String fileName) { this(fileName, null); }
+	public LineMap(String fileName, Consumer<LineMap> loader) {
+		this.fileName = fileName;
+		this.loader = loader;
+	}
+
+	/**
+	 * Record the line starts in the characters buf[from, to).
+	 * @param base  the position of buf[0] in the whole source.
+	 */
+	public void scan(char[] buf, int from, int to, int base) {
+		for (int i = from; i < to; i++) {
+			char c = buf[i];
+			if (pendingCR) {
+				pendingCR = false;
+				if (c != LF) addLineStart(base + i);
+			}
+			if (c == LF) {
+				addLineStart(base + i + 1);
+			} else if (c == CR) {
+				pendingCR = true;
+			}
+		}
+	}
+
+	/** Record the line starts in the bytes [from, to) of ASCII compatible source code. */
+	public void scan(ByteBuffer buf, int from, int to, int base) {
+		for (int i = from; i < to; i++) {
+			byte c = buf.get(i);
+			if (pendingCR) {
+				pendingCR = false;
+				if (c != LF) addLineStart(base + i);
+			}
+			if (c == LF) {
+				addLineStart(base + i + 1);
+			} else if (c == CR) {
+				pendingCR = true;
+			}
+		}
+	}
+
+	/**
+	 * The line map of the source after an edit: the line starts before the edit are kept,
+	 * the ones after it are shifted by the change of length, and only the edited range is scanned again.
+	 * A line start depends on the two characters before and at it, so the range is widened by one each side.
+	 * @param buf the whole source after the edit, buf[0, length).
+	 * @return a new map. this one stays valid for the tokens before the edit.
+	 */
+	public LineMap edit(int offset, int removedLength, int insertedLength, char[] buf, int length) {
+		load();
+		int delta = insertedLength - removedLength;
+		int from = Math.max(offset - 1, 0), to = Math.min(offset + insertedLength + 1, length);
+		int kept = lineIndex(from) + 1;                             // the line starts <= from.
+		int next = lineIndex(to - delta) + 1;                       // the first old line start > to after the edit.
+
+		LineMap edited = new LineMap(fileName);
+		edited.lineStarts = Arrays.copyOf(lineStarts, Math.max(kept + (lineCount - next) + 16, 64));
+		edited.lineCount = kept;
+		for (int i = from; i < to; i++) {
+			char c = buf[i];
+			if (c == LF || (c == CR && i + 1 < length && buf[i + 1] != LF)) {     // as scan(), a CR at the end is pending.
+				edited.addLineStart(i + 1);
+			}
+		}
+		for (int i = next; i < lineCount; i++) {
+			edited.addLineStart(lineStarts[i] + delta);
+		}
+		return edited;
+	}
+
+	protected void addLineStart(int offset) {
+		if (lineCount == lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+		}
+		lineStarts[lineCount++] = offset;
+	}
+
+	protected void load() {
+		if (loader != null) {
+			Consumer<LineMap> l = loader;
+			loader = null;  // release the source code.
+			l.accept(this);
+		}
+	}
+
+	/** @return the index of line containing the offset, starting from 0. */
+	protected int lineIndex(int offset) {
+		load();
+		int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	public int lineCount() {
+		load();
+		return lineCount;
+	}
+
+	/** @return the line number starting from 1. */
+	public int line(int offset) {
+		return lineIndex(offset) + 1;
+	}
+
+	/** @return the column number starting from 1. */
+	public int column(int offset) {
+		return offset - lineStarts[lineIndex(offset)] + 1;
+	}
+
+	/** @return the start offset of the given line (starting from 1). */
+	public int lineStart(int line) {
+		load();
+		return lineStarts[line - 1];
+	}
+
+	public Position position(int offset) {
+		int index = lineIndex(offset);
+		return new Position(fileName, index + 1, offset - lineStarts[index] + 1);
+	}
+}
@@ -0,0 +1,70 @@
+package fc.compiler.common.lexer;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Code reader over a memory-mapped source file.
+ * The file is mapped by FileChannel.map() and decoded lazily into a small buffer while reading,
+ * so the whole source code is never copied onto the heap.
+ * Only the characters from the start of current lexeme (sp) are kept in the buffer.
+ * @author FC
+ */
+public class MappedCodeReader extends CodeReader {
+	protected MappedByteBuffer input;
+	protected CharsetDecoder decoder;
+	protected boolean endOfInput;   // all bytes are decoded and the decoder is flushed.
+
+	public MappedCodeReader(Path path) throws IOException { this(path, StandardCharsets.UTF_8); }
+	public MappedCodeReader(Path path, Charset charset) throws IOException {
+		this(path, charset, DEFAULT_BUFFER_SIZE);
+	}
+	public MappedCodeReader(Path path, Charset charset, int bufferSize) throws IOException {
+		super(new char[bufferSize], 0, path.toString());
+
+		// the mapping remains valid after the channel is closed.
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Source file is too large to be mapped: " + path);
+			}
+			input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		nextChar();     // MUST call this to start reading.
+	}
+
+	/** a copy, because the buffer slides. */
+	@Override
+	public CharSequence lexemeView() {
+		return lexeme();
+	}
+
+	@Override
+	protected boolean fill() {
+		if (endOfInput) {
+			return false;
+		}
+
+		compact();
+		int start = limit;
+		CharBuffer out = CharBuffer.wrap(code, limit, code.length - limit);
+		CoderResult result = decoder.decode(input, out, true);
+		if (result.isUnderflow() && decoder.flush(out).isUnderflow()) {
+			endOfInput = true;
+		}
+		limit = out.position();
+		return limit > start;
+	}
+}
@@ -0,0 +1,69 @@
+package fc.compiler.common.lexer;
+
+/**
+ * Intern table of names for one compilation.
+ * The current lexeme of CodeReader is looked up without allocation,
+ * so the String of each name is created only once however often it appears.
+ * Share one table among the readers of the source files in the same compilation.
+ * @author FC
+ */
+public class NameTable {
+	protected String[] names = new String[256];    // open addressing with linear probing.
+	protected int count;
+
+	/** @return the interned String of the current lexeme of the reader. */
+	public String intern(CodeReader reader) {
+		int length = reader.lexemeLength();
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = hash * 31 + reader.lexemeChar(i);     // the same as String.hashCode().
+		}
+
+		int mask = names.length - 1;
+		for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+			String name = names[slot];
+			if (name == null) {
+				name = reader.lexeme();
+				names[slot] = name;
+				if (++count * 2 > names.length) {
+					rehash();
+				}
+				return name;
+			} else if (name.hashCode() == hash && matches(reader, name, length)) {
+				return name;
+			}
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	private static boolean matches(CodeReader reader, String name, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (reader.lexemeChar(i) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		String[] old = names;
+		names = new String[old.length * 2];
+		int mask = names.length - 1;
+		for (String name : old) {
+			if (name == null) continue;
+			int slot = mix(name.hashCode()) & mask;
+			while (names[slot] != null) slot = (slot + 1) & mask;
+			names[slot] = name;
+		}
+	}
+
+	private static int mix(int h) {
+		return h ^ (h >>> 16);
+	}
+}
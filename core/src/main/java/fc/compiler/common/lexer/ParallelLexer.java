@@ -0,0 +1,111 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.common.token.TokenBuffer;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static fc.compiler.common.lexer.Constants.CR;
+import static fc.compiler.common.lexer.Constants.LF;
+
+/**
+ * Lex a large source file in chunks in parallel, and stitch the tokens into one TokenBuffer.
+ *
+ * The source code is split at line starts accepted by the boundary, where no token spans
+ * and the lexer is in its initial state, e.g. not before a continuation line of fixed-format COBOL.
+ * Each chunk is scanned by its own reader and lexer on the ForkJoinPool.
+ * The readers start at the offset of their chunk, so the tokens have their offsets in the whole source,
+ * and the positions are resolved by one line map of the whole source.
+ * @author FC
+ */
+@Getter @Setter @Accessors(fluent = true)
+public class ParallelLexer {
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+	/** for the languages whose tokens never span lines. */
+	public static final Boundary ANY_LINE = (code, lineStart) -> true;
+
+	@FunctionalInterface
+	public interface Boundary {
+		/** @return true if the source code can be split before the line. */
+		boolean isSafe(char[] code, int lineStart);
+	}
+
+	protected final Supplier<? extends Lexer> lexers;
+	protected final Function<char[], ? extends CodeReader> readers;
+	protected final Boundary boundary;
+	protected ForkJoinPool pool = ForkJoinPool.commonPool();
+	protected int chunkSize = DEFAULT_CHUNK_SIZE;     // the minimal number of characters in one chunk.
+
+	/**
+	 * @param lexers  create a new lexer for each chunk.
+	 * @param readers create a new reader over the characters of one chunk.
+	 */
+	public ParallelLexer(Supplier<? extends Lexer> lexers, Function<char[], ? extends CodeReader> readers, Boundary boundary) {
+		this.lexers = lexers;
+		this.readers = readers;
+		this.boundary = boundary;
+	}
+
+	public TokenBuffer lex(char[] code, String fileName) {
+		int[] starts = split(code);
+		List<ForkJoinTask<TokenBuffer>> tasks = new ArrayList<>();
+		for (int i = 0; i + 1 < starts.length; i++) {
+			int start = starts[i], end = starts[i + 1];
+			tasks.add(pool.submit(() -> lexChunk(code, start, end, fileName)));
+		}
+
+		TokenBuffer tokens = new TokenBuffer(code.length / 4).source(code, 0);    // the trivia of chunks are in code.
+		for (int i = 0; i < tasks.size(); i++) {
+			TokenBuffer chunk = tasks.get(i).join();
+			if (i + 1 < tasks.size()) {
+				chunk.truncate(chunk.size() - 1);     // EOF of the chunk.
+			}
+			tokens.replace(tokens.size(), tokens.size(), chunk, 0);
+		}
+		tokens.lines(new LineMap(fileName, map -> map.scan(code, 0, code.length, 0)));
+		return tokens;
+	}
+
+	protected TokenBuffer lexChunk(char[] code, int start, int end, String fileName) {
+		CodeReader reader = readers.apply(start == 0 && end == code.length ? code : Arrays.copyOfRange(code, start, end));
+		reader.offset = start;
+		reader.fileName = fileName;
+		return TokenBuffer.of(lexers.get(), reader);
+	}
+
+	/** @return the starts of chunks, and the end of code at last. one chunk if no parallelism. */
+	protected int[] split(char[] code) {
+		int[] starts = new int[16];
+		int count = 1;
+		for (int p = chunkSize; p < code.length && pool.getParallelism() > 1; p += chunkSize) {
+			p = nextBoundary(code, p);
+			if (p >= code.length) break;
+			if (count + 1 == starts.length) starts = Arrays.copyOf(starts, count * 2);
+			starts[count++] = p;
+		}
+		starts[count++] = code.length;
+		return Arrays.copyOf(starts, count);
+	}
+
+	/** @return the first line start accepted by the boundary after from, or the end of code. */
+	protected int nextBoundary(char[] code, int from) {
+		int p = from;
+		while (p < code.length) {
+			while (p < code.length && code[p] != CR && code[p] != LF) p++;
+			if (p < code.length && code[p] == CR) p++;
+			if (p < code.length && code[p] == LF) p++;
+			if (p < code.length && boundary.isSafe(code, p)) {
+				return p;
+			}
+		}
+		return code.length;
+	}
+}
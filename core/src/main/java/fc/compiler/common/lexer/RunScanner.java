@@ -0,0 +1,82 @@
+package fc.compiler.common.lexer;
+
+import java.nio.ByteBuffer;
+
+import static fc.compiler.common.lexer.Constants.*;
+
+/**
+ * Find the end of long runs directly in the buffer of CodeReader:
+ * runs of white spaces, comment lines and the bodies of string literals.
+ *
+ * This is the scalar backend which scans one character at a time.
+ * {@link SwarRunScanner} scans 8 bytes at a time in one register,
+ * and {@link VectorRunScanner} scans character buffers with the SIMD instructions of the Vector API.
+ * {@link #get()} selects the vector backend only when the module jdk.incubator.vector is present,
+ * e.g. by --add-modules jdk.incubator.vector, and falls back to SwarRunScanner otherwise.
+ * @author FC
+ */
+public class RunScanner {
+	public static final String VECTOR_MODULE = "jdk.incubator.vector";
+	private static final RunScanner INSTANCE = select();
+
+	public static RunScanner get() { return INSTANCE; }
+
+	/** the vector backend is loaded by name, so this class links without the incubator module. */
+	private static RunScanner select() {
+		if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+			try {
+				return (RunScanner) Class.forName(RunScanner.class.getPackageName() + ".VectorRunScanner")
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// fall back to the scalar backends.
+			}
+		}
+		return new SwarRunScanner();
+	}
+
+	/** @return the index of the first character in buf[from, to) which is not SPACE, TAB or FF, or to if none. */
+	public int skipWhitespace(char[] buf, int from, int to) {
+		return scalarSkipWhitespace(buf, from, to);
+	}
+
+	/** @return the index of the first character in buf[from, to) which is one of c1 ~ c4, or to if none. */
+	public int indexOfAny(char[] buf, int from, int to, char c1, char c2, char c3, char c4) {
+		return scalarIndexOfAny(buf, from, to, c1, c2, c3, c4);
+	}
+
+	/** one character at a time, for the short runs and the tails of the other backends. */
+	protected static int scalarSkipWhitespace(char[] buf, int from, int to) {
+		int i = from;
+		while (i < to && (buf[i] == SPACE || buf[i] == TAB || buf[i] == FF)) i++;
+		return i;
+	}
+
+	protected static int scalarIndexOfAny(char[] buf, int from, int to, char c1, char c2, char c3, char c4) {
+		for (int i = from; i < to; i++) {
+			char c = buf[i];
+			if (c == c1 || c == c2 || c == c3 || c == c4) {
+				return i;
+			}
+		}
+		return to;
+	}
+
+	public int skipWhitespace(ByteBuffer buf, int from, int to) {
+		int i = from;
+		for (; i < to; i++) {
+			byte b = buf.get(i);
+			if (b != SPACE && b != TAB && b != FF) break;
+		}
+		return i;
+	}
+
+	public int indexOfAny(ByteBuffer buf, int from, int to, char c1, char c2, char c3, char c4) {
+		for (int i = from; i < to; i++) {
+			byte b = buf.get(i);
+			if (b == c1 || b == c2 || b == c3 || b == c4) {
+				return i;
+			}
+		}
+		return to;
+	}
+}
@@ -0,0 +1,67 @@
+package fc.compiler.common.lexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Code reader over a character stream.
+ * Only a window starting at the current lexeme (sp) is kept in the buffer and refilled while reading,
+ * so a source file of any size can be read with constant memory.
+ * The buffer grows only when a single lexeme is longer than half of it.
+ * @author FC
+ */
+public class StreamingCodeReader extends CodeReader implements Closeable {
+	protected Reader input;
+	protected boolean endOfInput;
+
+	public StreamingCodeReader(Reader input) { this(input, null); }
+	public StreamingCodeReader(Reader input, String fileName) { this(input, fileName, DEFAULT_BUFFER_SIZE); }
+	public StreamingCodeReader(Reader input, String fileName, int bufferSize) {
+		super(new char[bufferSize], 0, fileName);
+		this.input = input;
+
+		nextChar();     // MUST call this to start reading.
+	}
+
+	/** Malformed or unmappable bytes are replaced with the replacement character of the charset. */
+	public StreamingCodeReader(ReadableByteChannel channel, Charset charset, String fileName) {
+		this(Channels.newReader(channel, charset), fileName);
+	}
+
+	/** a copy, because the buffer slides. */
+	@Override
+	public CharSequence lexemeView() {
+		return lexeme();
+	}
+
+	@Override
+	protected boolean fill() {
+		if (endOfInput) {
+			return false;
+		}
+
+		compact();
+		int n;
+		try {
+			n = input.read(code, limit, code.length - limit);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (n < 0) {
+			endOfInput = true;
+			return false;
+		}
+		limit += n;
+		return n > 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+}
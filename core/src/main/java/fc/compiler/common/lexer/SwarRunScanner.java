@@ -0,0 +1,59 @@
+package fc.compiler.common.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Run scanner for byte buffers with SWAR (SIMD Within A Register):
+ * 8 bytes are loaded as one long and tested at once with bitwise arithmetic.
+ * Character buffers are scanned by the scalar backend.
+ * @author FC
+ */
+public class SwarRunScanner extends RunScanner {
+	private static final long ONES    = 0x0101010101010101L;
+	private static final long LOW7    = 0x7F7F7F7F7F7F7F7FL;
+	private static final long SPACES  = ONES * ' ';
+
+	/** @return 0x80 in each byte of x which is zero, and 0 in the other bytes. exact without carries across bytes. */
+	static long zeroBytes(long x) {
+		long t = (x & LOW7) + LOW7;
+		return ~(t | x | LOW7);
+	}
+
+	/** @return the index of the first byte marked in the mask. */
+	static int firstByte(long mask, ByteOrder order) {
+		return (order == ByteOrder.LITTLE_ENDIAN
+				? Long.numberOfTrailingZeros(mask)
+				: Long.numberOfLeadingZeros(mask)) >>> 3;
+	}
+
+	@Override
+	public int skipWhitespace(ByteBuffer buf, int from, int to) {
+		int i = from;
+		for (; i + 8 <= to; i += 8) {
+			long x = buf.getLong(i) ^ SPACES;
+			if (x != 0) {
+				i += firstByte(~zeroBytes(x) & ~LOW7, buf.order());
+				break;
+			}
+		}
+		return super.skipWhitespace(buf, i, to);     // TAB, FF and the tail.
+	}
+
+	@Override
+	public int indexOfAny(ByteBuffer buf, int from, int to, char c1, char c2, char c3, char c4) {
+		if ((c1 | c2 | c3 | c4) >= 0x80) {
+			return super.indexOfAny(buf, from, to, c1, c2, c3, c4);
+		}
+		long p1 = ONES * c1, p2 = ONES * c2, p3 = ONES * c3, p4 = ONES * c4;
+		int i = from;
+		for (; i + 8 <= to; i += 8) {
+			long x = buf.getLong(i);
+			long mask = zeroBytes(x ^ p1) | zeroBytes(x ^ p2) | zeroBytes(x ^ p3) | zeroBytes(x ^ p4);
+			if (mask != 0) {
+				return i + firstByte(mask, buf.order());
+			}
+		}
+		return super.indexOfAny(buf, i, to, c1, c2, c3, c4);
+	}
+}
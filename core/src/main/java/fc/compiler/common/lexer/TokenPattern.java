@@ -0,0 +1,75 @@
+package fc.compiler.common.lexer;
+
+/**
+ * Regular pattern over character classes, the declarative form of a token rule.
+ * e.g. identifier = TokenPattern.of(LETTER).then(TokenPattern.of(LETTER_OR_DIGIT).many())
+ * Patterns are compiled into one DFA by {@link TokenRules}.
+ * @author FC
+ */
+public final class TokenPattern {
+	enum Op { CHAR, SEQUENCE, ALTERNATIVE, MANY, EMPTY }
+
+	final Op op;
+	final CharClass charClass;      // for CHAR.
+	final TokenPattern left;        // for SEQUENCE, ALTERNATIVE and MANY.
+	final TokenPattern right;       // for SEQUENCE and ALTERNATIVE.
+
+	private TokenPattern(Op op, CharClass charClass, TokenPattern left, TokenPattern right) {
+		this.op = op;
+		this.charClass = charClass;
+		this.left = left;
+		this.right = right;
+	}
+
+	private static final TokenPattern EMPTY = new TokenPattern(Op.EMPTY, null, null, null);
+
+	/** one character of the class. */
+	public static TokenPattern of(CharClass charClass) {
+		return new TokenPattern(Op.CHAR, charClass, null, null);
+	}
+
+	/** one of the characters. */
+	public static TokenPattern of(char... chars) {
+		return of(CharClass.of(chars));
+	}
+
+	/** the characters of the text in order. */
+	public static TokenPattern text(String text) {
+		return text(text, false);
+	}
+
+	/** the characters of the text in order. the letters match both cases if ignoreCase. */
+	public static TokenPattern text(String text, boolean ignoreCase) {
+		TokenPattern pattern = EMPTY;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			char upper = Character.toUpperCase(c), lower = Character.toLowerCase(c);
+			pattern = pattern.then(ignoreCase && upper != lower ? of(upper, lower) : of(c));
+		}
+		return pattern;
+	}
+
+	public TokenPattern then(TokenPattern next) {
+		if (this == EMPTY) return next;
+		return new TokenPattern(Op.SEQUENCE, null, this, next);
+	}
+
+	public TokenPattern or(TokenPattern other) {
+		return new TokenPattern(Op.ALTERNATIVE, null, this, other);
+	}
+
+	/** zero or more times. */
+	public TokenPattern many() {
+		return new TokenPattern(Op.MANY, null, this, null);
+	}
+
+	/** one or more times. */
+	public TokenPattern some() {
+		return then(many());
+	}
+
+	/** zero or one time. */
+	public TokenPattern optional() {
+		return new TokenPattern(Op.ALTERNATIVE, null, this, EMPTY);
+	}
+}
@@ -0,0 +1,310 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.common.token.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Declarative token rules of a language, compiled into one {@link DfaLexer}.
+ * The longest match wins, and the first added rule wins among the matches of the same length,
+ * so keywords must be added before identifier.
+ *
+ * A rule can delegate to a procedural Lexer for the tokens which depend on context or have side effects.
+ * The characters which start no rule are left to the LexerMapper of the lexer.
+ *
+ * Compiling:
+ * - Thompson construction of one NFA from all patterns.
+ * - The characters are partitioned into equivalence classes by the character classes they belong to.
+ * - Subset construction of the DFA over the equivalence classes.
+ * @author FC
+ */
+public class TokenRules {
+	protected final List<TokenPattern> patterns = new ArrayList<>();
+	protected final List<String> kinds = new ArrayList<>();
+	protected final List<UnaryOperator<Token>> actions = new ArrayList<>();
+	protected final List<Lexer> lexers = new ArrayList<>();
+
+	public TokenRules rule(String kind, TokenPattern pattern) {
+		return rule(kind, pattern, null);
+	}
+
+	/** @param action applied to the token created for the rule, e.g. to set the radix of number literal. */
+	public TokenRules rule(String kind, TokenPattern pattern, UnaryOperator<Token> action) {
+		return add(pattern, kind, action, null);
+	}
+
+	/** if this rule matches, the lexer scans the token again from the start of lexeme. */
+	public TokenRules rule(TokenPattern pattern, Lexer lexer) {
+		return add(pattern, null, null, lexer);
+	}
+
+	public TokenRules literal(String text, String kind) {
+		return rule(kind, TokenPattern.text(text));
+	}
+
+	/** @param keywords map from the text of keyword to its token kind. */
+	public TokenRules keywords(Map<String, String> keywords, boolean ignoreCase) {
+		keywords.forEach((text, kind) -> rule(kind, TokenPattern.text(text, ignoreCase)));
+		return this;
+	}
+
+	protected TokenRules add(TokenPattern pattern, String kind, UnaryOperator<Token> action, Lexer lexer) {
+		patterns.add(pattern);
+		kinds.add(kind);
+		actions.add(action);
+		lexers.add(lexer);
+		return this;
+	}
+
+	// -- NFA: each state has at most one character edge and two epsilon edges. --
+	private CharClass[] edgeClass = new CharClass[256];
+	private int[] edgeTarget = new int[256];
+	private int[] epsilon1 = new int[256];
+	private int[] epsilon2 = new int[256];
+	private int[] acceptRule = new int[256];
+	private int stateCount;
+
+	private int newState() {
+		if (stateCount == edgeClass.length) {
+			int n = stateCount * 2;
+			edgeClass = Arrays.copyOf(edgeClass, n);
+			edgeTarget = Arrays.copyOf(edgeTarget, n);
+			epsilon1 = Arrays.copyOf(epsilon1, n);
+			epsilon2 = Arrays.copyOf(epsilon2, n);
+			acceptRule = Arrays.copyOf(acceptRule, n);
+		}
+		edgeClass[stateCount] = null;
+		epsilon1[stateCount] = epsilon2[stateCount] = acceptRule[stateCount] = -1;
+		return stateCount++;
+	}
+
+	private void addEpsilon(int from, int to) {
+		if (epsilon1[from] < 0) epsilon1[from] = to;
+		else epsilon2[from] = to;
+	}
+
+	/** build the fragment of the pattern from the start state. @return the end state. */
+	private int build(TokenPattern pattern, int start) {
+		switch (pattern.op) {
+			case CHAR: {
+				int end = newState();
+				edgeClass[start] = pattern.charClass;
+				edgeTarget[start] = end;
+				return end;
+			}
+			case SEQUENCE: {
+				int middle = build(pattern.left, start);
+				int next = newState();
+				addEpsilon(middle, next);
+				return build(pattern.right, next);
+			}
+			case ALTERNATIVE: {
+				int left = newState(), right = newState(), end = newState();
+				addEpsilon(start, left);
+				addEpsilon(start, right);
+				addEpsilon(build(pattern.left, left), end);
+				addEpsilon(build(pattern.right, right), end);
+				return end;
+			}
+			case MANY: {
+				int body = newState(), end = newState();
+				int bodyEnd = build(pattern.left, body);
+				addEpsilon(start, body);
+				addEpsilon(start, end);
+				addEpsilon(bodyEnd, body);
+				addEpsilon(bodyEnd, end);
+				return end;
+			}
+			default: {  // EMPTY
+				int end = newState();
+				addEpsilon(start, end);
+				return end;
+			}
+		}
+	}
+
+	private int[][] closures;           // the closure of each NFA state, computed on demand.
+	private int[] stamps;               // the last union which each NFA state is added to.
+	private int stamp;
+
+	/**
+	 * The epsilon closure of the states.
+	 * @return only the states with a character edge or accepting, which identify a DFA state.
+	 */
+	private StateSet closure(int[] states, int count) {
+		stamp++;
+		int[] union = new int[8];
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			for (int t : closure(states[i])) {
+				if (stamps[t] != stamp) {
+					stamps[t] = stamp;
+					if (n == union.length) union = Arrays.copyOf(union, n * 2);
+					union[n++] = t;
+				}
+			}
+		}
+		union = Arrays.copyOf(union, n);
+		Arrays.sort(union);
+		return new StateSet(union);
+	}
+
+	private int[] closure(int state) {
+		if (closures[state] == null) {
+			BitSet states = new BitSet();
+			int[] stack = new int[16];
+			int top = 0;
+			states.set(state);
+			stack[top++] = state;
+			while (top > 0) {
+				int s = stack[--top];
+				for (int t = epsilon1[s], i = 0; i < 2; t = epsilon2[s], i++) {
+					if (t >= 0 && !states.get(t)) {
+						states.set(t);
+						if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+						stack[top++] = t;
+					}
+				}
+			}
+			closures[state] = states.stream().filter(s -> edgeClass[s] != null || acceptRule[s] >= 0).toArray();
+		}
+		return closures[state];
+	}
+
+	private static final class StateSet {
+		final int[] states;
+
+		StateSet(int[] states) { this.states = states; }
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof StateSet && Arrays.equals(states, ((StateSet) o).states);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(states);
+		}
+	}
+
+	public DfaLexer compile() {
+		stateCount = 0;
+		BitSet starts = new BitSet();
+		for (int rule = 0; rule < patterns.size(); rule++) {
+			int start = newState();
+			int end = build(patterns.get(rule), start);     // may grow the arrays.
+			acceptRule[end] = rule;
+			starts.set(start);
+		}
+
+		closures = new int[stateCount][];
+		stamps = new int[stateCount];
+
+		// character classes on the edges, and the equivalence classes of characters.
+		Map<CharClass, Integer> charClasses = new LinkedHashMap<>();
+		for (int s = 0; s < stateCount; s++) {
+			if (edgeClass[s] != null) charClasses.putIfAbsent(edgeClass[s], charClasses.size());
+		}
+		CharClass[] classes = charClasses.keySet().toArray(new CharClass[0]);
+		int[] edgeIndex = new int[stateCount];
+		for (int s = 0; s < stateCount; s++) {
+			edgeIndex[s] = edgeClass[s] == null ? -1 : charClasses.get(edgeClass[s]);
+		}
+
+		Map<BitSet, Integer> signatures = new HashMap<>();
+		List<BitSet> members = new ArrayList<>();       // the character classes of each equivalence class.
+		signatures.put(new BitSet(), 0);                // class 0: characters in no class.
+		members.add(new BitSet());
+		byte[] classOf = new byte[Character.MAX_VALUE + 1];
+		CharClass[] extendedClasses = Arrays.stream(classes).filter(c -> !c.isAsciiOnly()).toArray(CharClass[]::new);
+		BitSet signature = new BitSet();
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			if (c >= 128 && extendedClasses.length == 0) {
+				break;      // all other characters are in class 0.
+			}
+			signature.clear();
+			for (int i = 0; i < classes.length; i++) {
+				if ((c < 128 || !classes[i].isAsciiOnly()) && classes[i].test((char) c)) signature.set(i);
+			}
+			Integer id = signatures.get(signature);
+			if (id == null) {
+				id = members.size();
+				if (id > 255) throw new IllegalStateException("too many character classes in token rules");
+				signatures.put((BitSet) signature.clone(), id);
+				members.add((BitSet) signature.clone());
+			}
+			classOf[c] = (byte) (int) id;
+		}
+		int classCount = members.size();
+
+		int[][] equivalenceClasses = new int[classes.length][];     // the equivalence classes in each character class.
+		for (int i = 0; i < classes.length; i++) {
+			final int charClass = i;
+			equivalenceClasses[i] = IntStream.range(0, classCount)
+					.filter(k -> members.get(k).get(charClass)).toArray();
+		}
+
+		// subset construction.
+		Map<StateSet, Integer> dfaStates = new HashMap<>();
+		List<StateSet> worklist = new ArrayList<>();
+		worklist.add(closure(starts.stream().toArray(), starts.cardinality()));
+		dfaStates.put(worklist.get(0), 0);
+		int[] transitions = new int[classCount * 64];
+		int[] accepts = new int[64];
+		int[][] moves = new int[classCount][8];     // the targets of the edges for each equivalence class.
+		int[] moveCounts = new int[classCount];
+		for (int d = 0; d < worklist.size(); d++) {
+			if ((d + 1) * classCount > transitions.length) {
+				transitions = Arrays.copyOf(transitions, transitions.length * 2);
+				accepts = Arrays.copyOf(accepts, accepts.length * 2);
+			}
+			int accept = -1;
+			Arrays.fill(moveCounts, 0);
+			for (int s : worklist.get(d).states) {
+				if (acceptRule[s] >= 0 && (accept < 0 || acceptRule[s] < accept)) accept = acceptRule[s];
+				if (edgeIndex[s] >= 0) {
+					for (int k : equivalenceClasses[edgeIndex[s]]) {
+						if (moveCounts[k] == moves[k].length) moves[k] = Arrays.copyOf(moves[k], moveCounts[k] * 2);
+						moves[k][moveCounts[k]++] = edgeTarget[s];
+					}
+				}
+			}
+			accepts[d] = accept;
+
+			for (int k = 0; k < classCount; k++) {
+				if (moveCounts[k] == 0) {
+					transitions[d * classCount + k] = -1;
+					continue;
+				}
+				StateSet move = closure(moves[k], moveCounts[k]);
+				Integer target = dfaStates.get(move);
+				if (target == null) {
+					target = worklist.size();
+					dfaStates.put(move, target);
+					worklist.add(move);
+				}
+				transitions[d * classCount + k] = target;
+			}
+		}
+
+		int n = worklist.size();
+		return new DfaLexer(classOf, classCount,
+				Arrays.copyOf(transitions, n * classCount), Arrays.copyOf(accepts, n),
+				kinds.toArray(new String[0]),
+				actionArray(),
+				lexers.toArray(new Lexer[0]));
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private UnaryOperator<Token>[] actionArray() {
+		return actions.toArray(new UnaryOperator[0]);
+	}
+}
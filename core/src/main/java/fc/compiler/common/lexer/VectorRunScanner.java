@@ -0,0 +1,48 @@
+package fc.compiler.common.lexer;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static fc.compiler.common.lexer.Constants.*;
+
+/**
+ * Run scanner for character buffers with the Vector API: a vector of characters, e.g. 16 with AVX2,
+ * is compared at once and the first match is taken from the mask.
+ * Byte buffers are scanned by SwarRunScanner.
+ * Only {@link RunScanner#get()} loads this class, when the module jdk.incubator.vector is present.
+ * @author FC
+ */
+public class VectorRunScanner extends SwarRunScanner {
+	private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+	/** the characters scanned one by one before the vectors, so the short runs cost no more than in the scalar backend. */
+	static final int SHORT_RUN = 32;
+
+	@Override
+	public int skipWhitespace(char[] buf, int from, int to) {
+		int i = scalarSkipWhitespace(buf, from, Math.min(to, from + SHORT_RUN));
+		if (i < from + SHORT_RUN) return i;
+		for (; i + SPECIES.length() <= to; i += SPECIES.length()) {
+			ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i);
+			VectorMask<Short> other = v.eq((short) SPACE).or(v.eq((short) TAB)).or(v.eq((short) FF)).not();
+			if (other.anyTrue()) {
+				return i + other.firstTrue();
+			}
+		}
+		return scalarSkipWhitespace(buf, i, to);     // the tail.
+	}
+
+	@Override
+	public int indexOfAny(char[] buf, int from, int to, char c1, char c2, char c3, char c4) {
+		int i = scalarIndexOfAny(buf, from, Math.min(to, from + SHORT_RUN), c1, c2, c3, c4);
+		if (i < from + SHORT_RUN) return i;
+		for (; i + SPECIES.length() <= to; i += SPECIES.length()) {
+			ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i);
+			VectorMask<Short> found = v.eq((short) c1).or(v.eq((short) c2)).or(v.eq((short) c3)).or(v.eq((short) c4));
+			if (found.anyTrue()) {
+				return i + found.firstTrue();
+			}
+		}
+		return scalarIndexOfAny(buf, i, to, c1, c2, c3, c4);
+	}
+}
@@ -0,0 +1,241 @@
+package fc.compiler.common.parser;
+
+import fc.compiler.common.ast.AstNode;
+import fc.compiler.common.ast.Expression;
+import fc.compiler.common.ast.expression.BinaryExpression;
+import fc.compiler.common.ast.expression.ParenthesizedExpression;
+import fc.compiler.common.ast.expression.PrefixUnaryExpression;
+import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenKinds;
+
+import java.util.Arrays;
+
+import static fc.compiler.common.token.TokenKind.*;
+
+/**
+ * The operators of a language by token kind: binding power, associativity and the factory of node.
+ * A higher binding power binds tighter, and 0 is not an operator.
+ *
+ * Expressions are parsed by precedence climbing in its iterative form:
+ * operands and pending operators are kept on explicit stacks, and an operator is reduced
+ * when the next one binds less tightly, or as tightly and it is left associative.
+ * So neither the precedence levels nor the nesting of parentheses recurse,
+ * e.g. for the long arithmetic expressions generated into COMPUTE statements.
+ * @author FC
+ */
+public class OperatorTable {
+	public enum Associativity { LEFT, RIGHT }
+
+	@FunctionalInterface
+	public interface NodeFactory {
+		/** @param left null for a prefix operator. */
+		Expression create(Expression left, Token operator, Expression right);
+	}
+
+	public static final NodeFactory BINARY = (left, operator, right) ->
+			new BinaryExpression().leftOperand(left).operator(operator.lexeme()).rightOperand(right);
+	public static final NodeFactory PREFIX = (left, operator, right) ->
+			new PrefixUnaryExpression().operator(operator.lexeme()).expression(right);
+
+	/**
+	 * the binary operators of Java from || to multiplicative, and the prefix operators.
+	 * instanceof is left out of the relational level: its right side is a type or a pattern, not an operand,
+	 * so it is left to the parser of the language, e.g. with a NodeFactory and the kind of JavaTokenKind.
+	 */
+	public static final OperatorTable JAVA = new OperatorTable()
+			.binary(1, Associativity.LEFT, BAR_BAR)
+			.binary(2, Associativity.LEFT, AMPERSAND_AMPERSAND)
+			.binary(3, Associativity.LEFT, BAR)
+			.binary(4, Associativity.LEFT, CARET)
+			.binary(5, Associativity.LEFT, AMPERSAND)
+			.binary(6, Associativity.LEFT, EQUAL_EQUAL, EXCLAMATION_MARK_EQUAL)
+			.binary(7, Associativity.LEFT, LT, LT_EQUAL, GT, GT_EQUAL)
+			.binary(8, Associativity.LEFT, LT_LT, GT_GT)
+			.binary(9, Associativity.LEFT, PLUS, MINUS)
+			.binary(10, Associativity.LEFT, STAR, SLASH, PERCENT)
+			.prefix(11, PLUS, MINUS, PLUS_PLUS, MINUS_MINUS, EXCLAMATION_MARK, TILDE)
+			.group(LEFT_PAREN, RIGHT_PAREN);
+
+	// -- by kind id --
+	protected int[] binaryPowers = new int[0];
+	protected int[] prefixPowers = new int[0];
+	protected boolean[] rightAssociative = new boolean[0];
+	protected NodeFactory[] binaryFactories = new NodeFactory[0];
+	protected NodeFactory[] prefixFactories = new NodeFactory[0];
+	protected int open = -1;        // the kind id of the parenthesis to group, -1 if none.
+	protected int close = -1;
+
+	public OperatorTable binary(int bindingPower, Associativity associativity, String... kinds) {
+		return binary(bindingPower, associativity, BINARY, kinds);
+	}
+
+	public OperatorTable binary(int bindingPower, Associativity associativity, NodeFactory factory, String... kinds) {
+		for (String kind : kinds) {
+			int id = ensureCapacity(kind);
+			binaryPowers[id] = bindingPower;
+			rightAssociative[id] = associativity == Associativity.RIGHT;
+			binaryFactories[id] = factory;
+		}
+		return this;
+	}
+
+	public OperatorTable prefix(int bindingPower, String... kinds) {
+		return prefix(bindingPower, PREFIX, kinds);
+	}
+
+	public OperatorTable prefix(int bindingPower, NodeFactory factory, String... kinds) {
+		for (String kind : kinds) {
+			int id = ensureCapacity(kind);
+			prefixPowers[id] = bindingPower;
+			prefixFactories[id] = factory;
+		}
+		return this;
+	}
+
+	/** the parentheses which group a subexpression into a ParenthesizedExpression. */
+	public OperatorTable group(String open, String close) {
+		this.open = ensureCapacity(open);
+		this.close = ensureCapacity(close);
+		return this;
+	}
+
+	public int binaryPower(int kindId) {
+		return kindId < binaryPowers.length ? binaryPowers[kindId] : 0;
+	}
+
+	public int prefixPower(int kindId) {
+		return kindId < prefixPowers.length ? prefixPowers[kindId] : 0;
+	}
+
+	private int ensureCapacity(String kind) {
+		int id = TokenKinds.id(kind);
+		if (id >= binaryPowers.length) {
+			int n = Math.max(id + 1, TokenKinds.count());
+			binaryPowers = Arrays.copyOf(binaryPowers, n);
+			prefixPowers = Arrays.copyOf(prefixPowers, n);
+			rightAssociative = Arrays.copyOf(rightAssociative, n);
+			binaryFactories = Arrays.copyOf(binaryFactories, n);
+			prefixFactories = Arrays.copyOf(prefixFactories, n);
+		}
+		return id;
+	}
+
+	/**
+	 * Parse an expression of the operators in this table.
+	 * @param operand parse an operand which starts with no prefix operator nor the open parenthesis.
+	 * @param minimumPower stop at the binary operators which bind less tightly than this, 0 to parse all.
+	 */
+	public Expression parse(TokenReader reader, ParserRegistry registry, Parser operand, int minimumPower) {
+		return parse(reader, registry, operand, null, minimumPower);
+	}
+
+	/** parse the rest of expression after the left operand already parsed. */
+	public Expression parse(TokenReader reader, ParserRegistry registry, Parser operand, Expression left, int minimumPower) {
+		Stacks stacks = new Stacks();
+		boolean expectOperand = left == null;
+		if (left != null) {
+			stacks.pushOperand(left);
+		}
+		for (;;) {
+			Token token = reader.token();
+			int id = token.kindId();
+			if (expectOperand) {
+				if (prefixPower(id) > 0 || id == open) {
+					stacks.pushOperator(token, true, id == open);
+					reader.nextToken();
+				} else {
+					AstNode node = operand.parse(reader, registry);
+					stacks.pushOperand(node instanceof Expression expression ? expression : null);
+					expectOperand = false;
+				}
+			} else if (binaryPower(id) > 0 && (binaryPower(id) >= minimumPower || stacks.opens > 0)) {
+				reduce(stacks, binaryPower(id), rightAssociative[id]);
+				stacks.pushOperator(token, false, false);
+				reader.nextToken();
+				expectOperand = true;
+			} else if (id == close && stacks.opens > 0) {
+				reduce(stacks, 0, false);
+				stacks.popOperator();       // the open parenthesis.
+				stacks.pushOperand(new ParenthesizedExpression().expression(stacks.popOperand()));
+				reader.nextToken();
+			} else {
+				break;
+			}
+		}
+		reduce(stacks, 0, false);
+		if (stacks.operators > 0) {
+			reader.syntaxError("Unclosed parenthesis before token " + reader.token());
+			while (stacks.operators > 0) {
+				stacks.popOperator();
+				reduce(stacks, 0, false);
+			}
+		}
+		return stacks.operands > 0 ? stacks.popOperand() : null;
+	}
+
+	/** reduce the pending operators which bind at least as tightly as the next operator, down to an open parenthesis. */
+	private void reduce(Stacks stacks, int nextPower, boolean nextRightAssociative) {
+		while (stacks.operators > 0) {
+			Token operator = stacks.peekOperator();
+			int id = operator.kindId();
+			if (stacks.isOpen()) {
+				return;
+			}
+			boolean prefix = stacks.isPrefix();
+			int power = prefix ? prefixPower(id) : binaryPower(id);
+			if (power < nextPower || (power == nextPower && nextRightAssociative)) {
+				return;
+			}
+			stacks.popOperator();
+			Expression right = stacks.popOperand();
+			if (prefix) {
+				stacks.pushOperand(prefixFactories[id].create(null, operator, right));
+			} else {
+				Expression left = stacks.popOperand();
+				stacks.pushOperand(binaryFactories[id].create(left, operator, right));
+			}
+		}
+	}
+
+	private static final byte BINARY_TYPE = 0;
+	private static final byte PREFIX_TYPE = 1;
+	private static final byte OPEN_TYPE = 2;
+
+	/** the operand and operator stacks of one expression. */
+	private static final class Stacks {
+		Expression[] operandStack = new Expression[16];
+		Token[] operatorStack = new Token[16];
+		byte[] types = new byte[16];    // BINARY_TYPE, PREFIX_TYPE or OPEN_TYPE.
+		int operands;
+		int operators;
+		int opens;                      // the number of open parentheses in the operator stack.
+
+		void pushOperand(Expression e) {
+			if (operands == operandStack.length) operandStack = Arrays.copyOf(operandStack, operands * 2);
+			operandStack[operands++] = e;
+		}
+
+		Expression popOperand() {
+			return operands > 0 ? operandStack[--operands] : null;
+		}
+
+		void pushOperator(Token t, boolean prefix, boolean open) {
+			if (operators == operatorStack.length) {
+				operatorStack = Arrays.copyOf(operatorStack, operators * 2);
+				types = Arrays.copyOf(types, operators * 2);
+			}
+			types[operators] = open ? OPEN_TYPE : prefix ? PREFIX_TYPE : BINARY_TYPE;
+			operatorStack[operators++] = t;
+			if (open) opens++;
+		}
+
+		Token popOperator() {
+			if (types[operators - 1] == OPEN_TYPE) opens--;
+			return operatorStack[--operators];
+		}
+
+		Token peekOperator() { return operatorStack[operators - 1]; }
+		boolean isPrefix() { return types[operators - 1] == PREFIX_TYPE; }
+		boolean isOpen() { return types[operators - 1] == OPEN_TYPE; }
+	}
+}
@@ -4,10 +4,12 @@ import fc.compiler.common.ast.AstNode;
 import fc.compiler.common.ast.Expression;
 import fc.compiler.common.ast.Statement;
 import fc.compiler.common.ast.expression.*;
+import fc.compiler.common.ast.statement.ErrorStatement;
 import fc.compiler.common.ast.statement.ExpressionStatement;
 import fc.compiler.common.ast.statement.ForStatement;
 import fc.compiler.common.ast.statement.IfStatement;
 import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenSet;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -84,10 +86,22 @@ public class ParserBase implements Parser {
 	}
 
 	protected static AstNode syntaxError(TokenReader reader, String message) {
-		log.error(message);
+		reader.syntaxError(message);
 		return null;
 	}
 
+	/**
+	 * Recover from a syntax error in panic mode: report it at the current token,
+	 * and skip the tokens up to one of the synchronizing kinds in one pass.
+	 * @return the error node in place of the construct which failed to parse.
+	 */
+	public static ErrorStatement recover(TokenReader reader, TokenSet sync, String message) {
+		Token token = reader.token();
+		reader.syntaxError(message + ": " + token);
+		int skipped = reader.skipTo(sync);
+		return new ErrorStatement().message(message).token(token).skipped(skipped);
+	}
+
 	protected static AstNode ignore(TokenReader reader, ParserRegistry registry) {
 		reader.nextToken();
 		return null;
@@ -95,7 +109,7 @@ public class ParserBase implements Parser {
 
 	public static AstNode parseAny(TokenReader reader, ParserRegistry registry) {
 		Token token = reader.token();
-		Parser parser = registry.get(token.kind());
+		Parser parser = registry.get(token);
 		if (parser != null) {
 			AstNode node = parser.parse(reader, registry);
 			return node;
@@ -162,7 +176,7 @@ public class ParserBase implements Parser {
 		return new CommaExpression().expressions(expressions);
 	}
 
-	public static String[] DEFAULT_COMPOUND_ASSIGNMENT_OPERATORS = {
+	public static final TokenSet DEFAULT_COMPOUND_ASSIGNMENT_OPERATORS = TokenSet.of(
 			PLUS_EQUAL,
 			MINUS_EQUAL,
 			STAR_EQUAL,
@@ -172,8 +186,11 @@ public class ParserBase implements Parser {
 			LT_LT_EQUAL,
 			PERCENT_EQUAL,
 			TILDE_EQUAL,
-			CARET_EQUAL,
-	};
+			CARET_EQUAL
+	);
+	public static final TokenSet PREFIX_UNARY_OPERATORS = TokenSet.of(
+			PLUS, MINUS, PLUS_PLUS, MINUS_MINUS, BAR, TILDE, LEFT_PAREN);
+	public static final TokenSet POSTFIX_UNARY_OPERATORS = TokenSet.of(DOT, LEFT_PAREN, LEFT_BRACKET);
 
 	public static Expression parseAssignmentExpression(TokenReader reader, ParserRegistry registry) {
 		Token operator = null;
@@ -197,25 +214,38 @@ public class ParserBase implements Parser {
 			Expression falseExpr = parseTernaryExpression(reader, registry);
 			return new TernaryExpression().condition(expr).trueExpression(trueExpr).falseExpression(falseExpr);
 		}
-		return null;
+		return expr;
 	}
 
+	/** by the operator table of registry, or of Java if none. */
 	public static Expression parseBinaryExpression(TokenReader reader, ParserRegistry registry) {
-		Expression expr = parseUnaryExpression(reader, registry);
-		// operator precedence
-		// if has binary operator,
-		//  return parseBinaryExpressionRest()
-		return expr;
+		return operators(registry).parse(reader, registry, ParserBase::parseOperand, 0);
 	}
 
+	/** the binary operators after lhs which bind at least as tightly as minimumPrecedence. */
 	public static Expression parseBinaryExpressionRest(TokenReader reader, ParserRegistry registry,
-	                                                    Expression lhs, String operator, int minimumPrecedence) {
-		return null;
+	                                                    Expression lhs, int minimumPrecedence) {
+		return operators(registry).parse(reader, registry, ParserBase::parseOperand, lhs, minimumPrecedence);
+	}
+
+	protected static OperatorTable operators(ParserRegistry registry) {
+		return operators(registry, OperatorTable.JAVA);
+	}
+
+	/** the operator table of registry, or the fallback of the language if none. */
+	protected static OperatorTable operators(ParserRegistry registry, OperatorTable fallback) {
+		return registry != null && registry.operators() != null ? registry.operators() : fallback;
+	}
+
+	/** the operand of binary expression. the prefix operators and parentheses are left to the operator table. */
+	public static Expression parseOperand(TokenReader reader, ParserRegistry registry) {
+		Expression expr = parsePrimaryExpression(reader, registry);
+		return parsePostfixUnaryExpression(reader, registry, expr);
 	}
 
 	public static Expression parseUnaryExpression(TokenReader reader, ParserRegistry registry) {
 		Expression expr = null;
-		if (reader.isKindAnyOf(PLUS, MINUS, PLUS_PLUS, MINUS_MINUS, BAR, TILDE, LEFT_PAREN)) {
+		if (reader.isKindAnyOf(PREFIX_UNARY_OPERATORS)) {
 			expr = parsePrefixUnaryExpression(reader, registry);
 		} else {
 			expr = parsePrimaryExpression(reader, registry);
@@ -225,7 +255,7 @@ public class ParserBase implements Parser {
 	}
 
 	public static Expression parsePrefixUnaryExpression(TokenReader reader, ParserRegistry registry) {
-		Token prefix = reader.optionalAnyOfAndReturn(PLUS, MINUS, PLUS_PLUS, MINUS_MINUS, BAR, TILDE, LEFT_PAREN);
+		Token prefix = reader.optionalAnyOfAndReturn(PREFIX_UNARY_OPERATORS);
 		if (prefix != null) {
 			Expression expr = parseUnaryExpression(reader, registry);
 			return new PrefixUnaryExpression().expression(expr).operator(prefix.lexeme());
@@ -235,7 +265,7 @@ public class ParserBase implements Parser {
 
 	public static Expression parsePostfixUnaryExpression(TokenReader reader, ParserRegistry registry, Expression expr) {
 		for (;;) {
-			Token prefix = reader.optionalAnyOfAndReturn(DOT, LEFT_PAREN, LEFT_BRACKET);
+			Token prefix = reader.optionalAnyOfAndReturn(POSTFIX_UNARY_OPERATORS);
 			if (prefix != null) {
 				Expression expr2 = parseExpression(reader, registry);
 				expr = new PostfixUnaryExpression().expression(expr2).operator(prefix.lexeme());
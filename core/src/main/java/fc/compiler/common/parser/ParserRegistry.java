@@ -1,21 +1,81 @@
 package fc.compiler.common.parser;
 
-import java.util.HashMap;
-import java.util.Map;
+import fc.compiler.common.ast.AstNode;
+import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenKinds;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Parsers registered by token kind, dispatched by the dense id of the kind in TokenKinds.
+ *
+ * The operator table of the language is registered here too, for the binary expressions.
+ *
+ * The rules of a parsing context are registered as a PredictiveTable with an id from {@link #newContextId()},
+ * and dispatched by {@link #get(int, Token)} only in that context, without falling back to the default parser.
  * @author FC
  */
 public class ParserRegistry {
+	private static final AtomicInteger CONTEXT_IDS = new AtomicInteger();
+
 	protected Parser defaultParser;
-	protected Map<String, Parser> parsers = new HashMap<>();
+	protected Parser[] parsers = new Parser[TokenKinds.count()];    // by kind id.
+	protected OperatorTable operators;
+	protected PredictiveTable[] contexts = new PredictiveTable[0];     // by context id.
 
-	public Parser get(String tokenKind) {
-		Parser parser = parsers.get(tokenKind);
+	public OperatorTable operators() {
+		return operators;
+	}
+
+	public ParserRegistry operators(OperatorTable operators) {
+		this.operators = operators;
+		return this;
+	}
+
+	/** @return a dense id of parsing context. */
+	public static int newContextId() {
+		return CONTEXT_IDS.getAndIncrement();
+	}
+
+	public ParserRegistry context(int contextId, PredictiveTable table) {
+		if (contextId >= contexts.length) {
+			contexts = Arrays.copyOf(contexts, contextId + 1);
+		}
+		contexts[contextId] = table;
+		return this;
+	}
+
+	public PredictiveTable context(int contextId) {
+		return contextId < contexts.length ? contexts[contextId] : null;
+	}
+
+	/** @return the rule of the context which starts with the token, null if none. */
+	public Parser get(int contextId, Token token) {
+		PredictiveTable table = contextId < contexts.length ? contexts[contextId] : null;
+		return table == null ? null : table.get(token.kindId());
+	}
+
+	public Parser get(Token token) {
+		return get(token.kindId());
+	}
+
+	public Parser get(int kindId) {
+		Parser parser = kindId < parsers.length ? parsers[kindId] : null;
 		return parser != null ? parser : defaultParser;
 	}
 
+	public Parser get(String tokenKind) {
+		return get(TokenKinds.id(tokenKind));
+	}
+
 	public Parser put(String tokenKind, Parser parser) {
-		return parsers.put(tokenKind, parser);
+		int id = TokenKinds.id(tokenKind);
+		if (id >= parsers.length) {
+			parsers = Arrays.copyOf(parsers, Math.max(id + 1, TokenKinds.count()));
+		}
+		Parser previous = parsers[id];
+		parsers[id] = parser;
+		return previous;
 	}
 }
@@ -0,0 +1,123 @@
+package fc.compiler.common.parser;
+
+import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenKinds;
+import fc.compiler.common.token.TokenSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rules of one parsing context, e.g. the clauses of a data description entry or the statements
+ * of the procedure division, dispatched by the kind id of their first token.
+ *
+ * Each rule is added with its FIRST set, the token kinds it can start with.
+ * build() compiles the rules into one array by kind id, so dispatching is one array load,
+ * and fails if the FIRST sets of two rules overlap: a conflict of the grammar is reported
+ * when the registry is built, not while parsing.
+ * Each context has its own table, so the rules of one context are never dispatched in another.
+ *
+ * The synchronizing set of a context is where the parser resumes after a syntax error in it:
+ * the FIRST sets of its rules and the kinds declared by sync(), e.g. the separator period and scope terminators.
+ * @author FC
+ */
+public class PredictiveTable {
+	protected final String name;
+	protected final TokenSet first;                 // the union of the FIRST sets.
+	protected final TokenSet sync;
+	protected final Parser[] parsers;               // by kind id.
+
+	protected PredictiveTable(String name, TokenSet first, TokenSet sync, Parser[] parsers) {
+		this.name = name;
+		this.first = first;
+		this.sync = sync;
+		this.parsers = parsers;
+	}
+
+	public static Builder builder(String name) {
+		return new Builder(name);
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/** @return the token kinds which start a rule of this context. */
+	public TokenSet first() {
+		return first;
+	}
+
+	/** @return the token kinds to skip to after a syntax error in this context. */
+	public TokenSet sync() {
+		return sync;
+	}
+
+	/** @return the rule which starts with the token, null if none in this context. */
+	public Parser get(Token token) {
+		return get(token.kindId());
+	}
+
+	public Parser get(int kindId) {
+		return kindId < parsers.length ? parsers[kindId] : null;
+	}
+
+	@Override
+	public String toString() {
+		return name + first;
+	}
+
+	public static class Builder {
+		protected final String name;
+		protected final List<String> ruleNames = new ArrayList<>();
+		protected final List<TokenSet> firsts = new ArrayList<>();
+		protected final List<Parser> rules = new ArrayList<>();
+		protected TokenSet sync = TokenSet.EMPTY;
+
+		protected Builder(String name) {
+			this.name = name;
+		}
+
+		/** add a rule which starts with one of the token kinds of first. */
+		public Builder rule(String ruleName, TokenSet first, Parser parser) {
+			ruleNames.add(ruleName);
+			firsts.add(first);
+			rules.add(parser);
+			return this;
+		}
+
+		/** add the token kinds to skip to after a syntax error, besides the FIRST sets of rules. */
+		public Builder sync(TokenSet kinds) {
+			sync = sync.union(kinds);
+			return this;
+		}
+
+		/** @throws IllegalStateException if the FIRST sets of rules overlap, with all conflicts in the message. */
+		public PredictiveTable build() {
+			int count = TokenKinds.count();
+			Parser[] parsers = new Parser[count];
+			int[] owners = new int[count];              // the rule index + 1 by kind id.
+			TokenSet first = TokenSet.EMPTY;
+			StringBuilder conflicts = new StringBuilder();
+
+			for (int r = 0; r < rules.size(); r++) {
+				Parser parser = rules.get(r);
+				TokenSet ruleFirst = firsts.get(r);
+				first = first.union(ruleFirst);
+				for (int id = 0; id < count; id++) {
+					if (!ruleFirst.contains(id)) continue;
+					if (owners[id] != 0) {
+						conflicts.append("\n  ").append(TokenKinds.name(id)).append(" starts both ")
+								.append(ruleNames.get(owners[id] - 1)).append(" and ").append(ruleNames.get(r));
+						continue;
+					}
+					owners[id] = r + 1;
+					parsers[id] = parser;
+				}
+			}
+			if (!conflicts.isEmpty()) {
+				throw new IllegalStateException("Conflicting rules in context " + name + ":" + conflicts);
+			}
+			return new PredictiveTable(name, first, first.union(sync), parsers);
+		}
+	}
+}
@@ -3,30 +3,48 @@ package fc.compiler.common.parser;
 import fc.compiler.common.lexer.CodeReader;
 import fc.compiler.common.lexer.Lexer;
 import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenBuffer;
+import fc.compiler.common.token.TokenSet;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.function.Predicate;
 
 import static fc.compiler.common.token.TokenKind.*;
 
 /**
  * A bridge between Lexer and Parser just like CodeReader
+ *
+ * The current token and the lookahead tokens are kept in a growable ring buffer,
+ * so consuming and peeking a token cost O(1).
+ * While a mark is active, the consumed tokens are kept too, so that a parser can look ahead
+ * speculatively and go back by reset() without scanning the tokens again.
  * @author FC
  */
 @Accessors(fluent = true) @Slf4j
 public class TokenReader {
+	public static final TokenSet SPECIAL_TOKENS = TokenSet.of(
+			LINE_COMMENT, BLOCK_COMMENT, DOC_COMMENT, WHITE_SPACES, LINE_TERMINATOR);
+
 	@Getter @Setter	protected Lexer lexer;
 	@Getter @Setter	protected CodeReader codeReader;
+	@Getter protected TokenBuffer buffer;  // read the tokens from it instead of lexer if not null.
+	protected int index;                   // the index of next token in buffer.
 	@Getter protected Token token;  // current token
-	protected List<Token> lookaheadTokens = new ArrayList<>();
 	@Getter protected boolean ignoreSpecialTokens = true;  // white spaces, line terminator and comments
 
+	// -- the tokens [base, base + size) by position, from ring[first]. --
+	protected Token[] ring = new Token[16];     // the length is a power of 2.
+	protected int first;
+	protected int base;
+	protected int size;
+	@Getter protected int position = -1;        // the position of current token, counted from 0.
+	protected int[] markStack = new int[8];     // the positions of active marks, the innermost on top.
+	protected int marks;                        // the number of active marks.
+	@Getter protected int errors;               // the number of syntax errors reported.
 	public TokenReader(Lexer lexer, CodeReader codeReader) {
 		this.codeReader = codeReader;
 		this.lexer = lexer;
@@ -34,15 +52,37 @@ public class TokenReader {
 		nextToken();
 	}
 
+	public TokenReader(TokenBuffer buffer) {
+		this.buffer = buffer;
+
+		nextToken();
+	}
+
 	public Token nextToken() {
-		if (!lookaheadTokens.isEmpty()) {
-			token = lookaheadTokens.remove(0);    // always the bottom one
-		} else {
-			token = doNextToken();
-		}
+		seek(position + 1);
 		return token;
 	}
 
+	/** move to the token at the position, not before the tokens kept by a mark. */
+	public void seek(int position) {
+		if (position < base) {
+			throw new IllegalArgumentException("Invalid position " + position + " before the kept tokens from " + base);
+		}
+		while (position >= base + size) {
+			append(doNextToken());
+		}
+		this.position = position;
+		if (marks == 0) {   // drop the consumed tokens.
+			while (base < position) {
+				ring[first] = null;
+				first = (first + 1) & (ring.length - 1);
+				base++;
+				size--;
+			}
+		}
+		token = tokenAt(position);
+	}
+
 	/**
 	 *
 	 * @param lookahead current token if 0.
@@ -51,16 +91,70 @@ public class TokenReader {
 	public Token peekToken(int lookahead) {
 		if (lookahead == 0) {
 			return token;
-		} else {
-			// append to the end.
-			for (int i = lookaheadTokens.size(); i < lookahead; i++) {
-				lookaheadTokens.add(doNextToken());
+		}
+		while (position + lookahead >= base + size) {
+			append(doNextToken());
+		}
+		return tokenAt(position + lookahead);
+	}
+
+	/**
+	 * Keep the tokens from the current one until the mark is reset or released.
+	 * Marks nest: releasing or resetting a mark releases the marks made after it too.
+	 * @return the mark to pass to reset() or release().
+	 */
+	public int mark() {
+		if (marks == markStack.length) {
+			markStack = Arrays.copyOf(markStack, marks * 2);
+		}
+		markStack[marks++] = position;
+		return position;
+	}
+
+	/** go back to the token at the mark, and release it with the marks after it. */
+	public void reset(int mark) {
+		if (mark < base || mark > position) {
+			throw new IllegalArgumentException("Invalid mark " + mark + " out of [" + base + ", " + position + "]");
+		}
+		release(mark);
+		seek(mark);
+	}
+
+	/** keep the current token, e.g. if the speculative parsing succeeds. release the marks after it too. */
+	public void release(int mark) {
+		while (marks > 0 && markStack[marks - 1] > mark) {
+			marks--;
+		}
+		if (marks > 0 && markStack[marks - 1] == mark) {
+			marks--;
+		}
+	}
+
+	private Token tokenAt(int position) {
+		return ring[(first + position - base) & (ring.length - 1)];
+	}
+
+	private void append(Token t) {
+		if (size == ring.length) {
+			Token[] newRing = new Token[size * 2];
+			for (int i = 0; i < size; i++) {
+				newRing[i] = ring[(first + i) & (ring.length - 1)];
 			}
-			return lookaheadTokens.get(lookahead - 1);
+			ring = newRing;
+			first = 0;
 		}
+		ring[(first + size) & (ring.length - 1)] = t;
+		size++;
 	}
 
 	protected Token doNextToken() {
+		if (buffer != null) {
+			while (index < buffer.size() - 1 && ignoreSpecialTokens && SPECIAL_TOKENS.contains(buffer.kindId(index))) {
+				index++;
+			}
+			return buffer.token(index < buffer.size() - 1 ? index++ : index);    // EOF at last.
+		}
+
 		Token t = null;
 		do {
 			t = lexer.scan(codeReader);
@@ -69,8 +163,7 @@ public class TokenReader {
 	}
 
 	protected boolean isSpecialToken(Token t) {
-		return t.kind() == LINE_COMMENT || t.kind() == BLOCK_COMMENT || t.kind() == DOC_COMMENT
-				|| t.kind() == WHITE_SPACES || t.kind() == LINE_TERMINATOR;
+		return SPECIAL_TOKENS.contains(t);
 	}
 
 	public boolean accept(Predicate<String> predicate) {
@@ -93,10 +186,36 @@ public class TokenReader {
 		return false;
 	}
 
+	protected Token returnAndNextTokenIfEqual(boolean errorIfNotEqual, String tokenKind) {
+		Token currentToken = token;
+		if (tokenKind.equals(token.kind())) {
+			nextToken();    // move to next token
+			return currentToken;
+		}
+
+		if (errorIfNotEqual) {
+			syntaxError("Token kind " + tokenKind + " is expected, but token " + token + " is parsed.");
+		}
+		return null;
+	}
+
+	protected Token returnAndNextTokenIfEqual(boolean errorIfNotEqual, TokenSet tokenKinds) {
+		Token currentToken = token;
+		if (tokenKinds.contains(token)) {
+			nextToken();    // move to next token
+			return currentToken;
+		}
+
+		if (errorIfNotEqual) {
+			syntaxError("One of token kind " + tokenKinds + " is expected, but token " + token + " is parsed.");
+		}
+		return null;
+	}
+
 	protected Token returnAndNextTokenIfEqual(boolean errorIfNotEqual, String... tokenKinds) {
 		Token currentToken = token;
 		for (String tokenKind : tokenKinds) {
-			if (token.kind() == tokenKind) {
+			if (tokenKind.equals(token.kind())) {
 				nextToken();    // move to next token
 				return currentToken;
 			}
@@ -115,11 +234,23 @@ public class TokenReader {
 	public boolean acceptAnyOf(String... tokenKinds) {
 		return returnAndNextTokenIfEqual(true, tokenKinds) != null;
 	}
+	public boolean acceptAnyOf(String tokenKind) {
+		return returnAndNextTokenIfEqual(true, tokenKind) != null;
+	}
+	public boolean acceptAnyOf(TokenSet tokenKinds) {
+		return returnAndNextTokenIfEqual(true, tokenKinds) != null;
+	}
 
 	/** return current token and move to next token if equal. otherwise, report error. */
 	public Token acceptAnyOfAndReturn(String... tokenKinds) {
 		return returnAndNextTokenIfEqual(true, tokenKinds);
 	}
+	public Token acceptAnyOfAndReturn(String tokenKind) {
+		return returnAndNextTokenIfEqual(true, tokenKind);
+	}
+	public Token acceptAnyOfAndReturn(TokenSet tokenKinds) {
+		return returnAndNextTokenIfEqual(true, tokenKinds);
+	}
 
 	public boolean optional(String tokenKind) {
 		if (tokenKind.equals(this.token.kind())) {
@@ -134,11 +265,23 @@ public class TokenReader {
 	public boolean optionalAnyOf(String... tokenKinds) {
 		return returnAndNextTokenIfEqual(false, tokenKinds) != null;
 	}
+	public boolean optionalAnyOf(String tokenKind) {
+		return returnAndNextTokenIfEqual(false, tokenKind) != null;
+	}
+	public boolean optionalAnyOf(TokenSet tokenKinds) {
+		return returnAndNextTokenIfEqual(false, tokenKinds) != null;
+	}
 
-	/** return current token and move to next token if equal. otherwise, report error. */
+	/** return current token and move to next token if equal. otherwise, ignore. */
 	public Token optionalAnyOfAndReturn(String... tokenKinds) {
 		return returnAndNextTokenIfEqual(false, tokenKinds);
 	}
+	public Token optionalAnyOfAndReturn(String tokenKind) {
+		return returnAndNextTokenIfEqual(false, tokenKind);
+	}
+	public Token optionalAnyOfAndReturn(TokenSet tokenKinds) {
+		return returnAndNextTokenIfEqual(false, tokenKinds);
+	}
 
 	/** accept and advance only if the kind of current token and next tokens are same as @param tokenKinds. */
 	public boolean optionalNextTokens(String... tokenKinds) {
@@ -153,12 +296,17 @@ public class TokenReader {
 		return tokenKind.equals(token.kind());
 	}
 
+	/** @param kindId the id in TokenKinds. */
+	public boolean isKind(int kindId) {
+		return token.kindId() == kindId;
+	}
+
 	/** check if the kind of current token and next tokens are same as @param tokenKinds. */
 	public boolean isKind(String... tokenKinds) {
 		peekToken(tokenKinds.length - 1); // to peek n-1 next tokens.
 		for (int i = 0; i < tokenKinds.length; i++) {
 			Token t = peekToken(i);
-			if (t.kind() != tokenKinds[i]) {
+			if (!tokenKinds[i].equals(t.kind())) {
 				return false;
 			}
 		}
@@ -173,6 +321,10 @@ public class TokenReader {
 		return false;
 	}
 
+	public boolean isKindAnyOf(TokenSet tokenKinds) {
+		return tokenKinds.contains(token);
+	}
+
 	// call nextToken() n times
 	public void nextTokens(int n) {
 		for (int i = 0; i < n; i++) {
@@ -188,13 +340,36 @@ public class TokenReader {
 		}
 	}
 
+	/**
+	 * Skip the tokens up to one of the kinds or EOF in one pass, e.g. to recover from a syntax error.
+	 * Over a TokenBuffer, the tokens not read ahead yet are tested by their kind ids without creating them.
+	 * @return the number of skipped tokens.
+	 */
+	public int skipTo(TokenSet tokenKinds) {
+		int skipped = 0;
+		while (!tokenKinds.contains(token) && !EOF.equals(token.kind())) {
+			skipped++;
+			if (buffer != null && marks == 0 && position + 1 == base + size) {
+				for (; index < buffer.size() - 1; index++) {
+					int id = buffer.kindId(index);
+					if (ignoreSpecialTokens && SPECIAL_TOKENS.contains(id)) continue;
+					if (tokenKinds.contains(id)) break;
+					skipped++;
+				}
+			}
+			nextToken();
+		}
+		return skipped;
+	}
+
 	/** Skip all tokens until the given token kind. */
 	public void skipTo(String tokenKind) {
 		for (Token t = token(); tokenKind.equals(t.kind()); t = nextToken()) {
 		}
 	}
 
-	protected static void syntaxError(String message) {
+	protected void syntaxError(String message) {
+		errors++;
 		log.error(message);
 	}
 }
@@ -1,9 +1,13 @@
 package fc.compiler.common.token;
 
+import fc.compiler.common.lexer.CodeReader;
+import fc.compiler.common.lexer.LineMap;
 import fc.compiler.common.lexer.Position;
 import lombok.*;
 import lombok.experimental.Accessors;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.HashMap;
 
 /**
@@ -12,25 +16,142 @@ import java.util.HashMap;
  * A lexeme is a sequence of characters in the source code that matches the pattern for a token
  * and is identified by the lexer as an instance of that token.
  *
+ * The position of token from lexer is recorded as an offset in the whole source code,
+ * and resolved to line and column by the line map of the file only when it is asked.
+ *
+ * The value of a number literal is decoded by the lexer from the lexeme in place,
+ * so later passes read it from the primitive fields without parsing a String again.
+ *
  * @author FC
  */
 
 @Getter @Setter @Accessors(fluent = true)
-@NoArgsConstructor @RequiredArgsConstructor @AllArgsConstructor
+@NoArgsConstructor
 public class Token implements Cloneable {
 	@NonNull protected String kind;
-	protected String lexeme;
+	@Setter(AccessLevel.NONE)
+	protected int kindId = -1;      // the dense id of kind in TokenKinds, resolved on first use.
+	protected CharSequence lexeme;  // a view of the source code until the String is asked.
 	protected HashMap<String, Object> attributes;
-	@NonNull protected Position position;
+	protected int offset;           // the start position of token in the whole source code.
+	protected LineMap lines;        // the line map of source file to resolve position from offset.
+	protected Position position;    // the resolved position if not from lexer.
+
+	// -- the value of number literal. --
+	protected int radix;            // 0 if not a number literal.
+	@Setter(AccessLevel.NONE)
+	protected long value;           // the digits without the decimal point, e.g. 12345 for 123.45.
+	@Setter(AccessLevel.NONE)
+	protected int scale;            // the number of digits after the decimal point, e.g. 2 for 123.45.
+	@Setter(AccessLevel.NONE)
+	protected boolean overflow;     // the digits do not fit in value, left to decimalValue() to parse.
+
+	public Token(@NonNull String kind, @NonNull Position position) {
+		this.kind = kind;
+		this.position = position;
+	}
+
+	/** token of the current lexeme in the reader. */
+	public Token(@NonNull String kind, CodeReader reader) {
+		this.kind = kind;
+		this.offset = reader.offset + reader.sp;
+		this.lines = reader.lines;
+	}
+
+	public Token kind(@NonNull String kind) {
+		this.kind = kind;
+		this.kindId = -1;
+		return this;
+	}
+
+	public int kindId() {
+		int id = kindId;
+		if (id < 0) {
+			kindId = id = TokenKinds.id(kind);
+		}
+		return id;
+	}
+
+	public String lexeme() {
+		CharSequence s = lexeme;
+		if (s != null && !(s instanceof String)) {
+			lexeme = s = s.toString();
+		}
+		return (String) s;
+	}
+
+	/** the lexeme without creating its String. */
+	public CharSequence lexemeView() {
+		return lexeme;
+	}
 
-	public Token radix(int radix) {
-		if (attributes == null) {
-			attributes = new HashMap<>();
+	public Position position() {
+		return position == null && lines != null ? lines.position(offset) : position;
+	}
+
+	/**
+	 * Decode the lexeme as a number literal in the radix into value and scale, without creating its String.
+	 * The prefix 0x or 0b and underscores are skipped, and it stops at a suffix, e.g. L of 10L.
+	 */
+	public Token number(int radix) {
+		CharSequence s = lexeme;
+		int i = digitsStart(s, radix), n = s.length(), digits = -1;
+		long v = 0, max = (Long.MAX_VALUE - radix + 1) / radix;
+		boolean overflow = false;
+		for (; i < n; i++) {
+			char c = s.charAt(i);
+			if (c == '.' && digits < 0) {
+				digits = 0;
+				continue;
+			} else if (c == '_') {
+				continue;
+			}
+			int d = Character.digit(c, radix);
+			if (d < 0) break;
+			if (v > max) overflow = true;
+			v = v * radix + d;
+			if (digits >= 0) digits++;
 		}
-		attributes.put("radix", radix);
+		this.radix = radix;
+		this.value = overflow ? 0 : v;
+		this.scale = Math.max(digits, 0);
+		this.overflow = overflow;
+		return this;
+	}
+
+	/** the value of number literal decoded before, e.g. kept by TokenBuffer, so the lexeme is not decoded again. */
+	public Token number(int radix, long value, int scale, boolean overflow) {
+		this.radix = radix;
+		this.value = value;
+		this.scale = scale;
+		this.overflow = overflow;
 		return this;
 	}
 
+	/** the value of number literal, parsed from the lexeme only if it overflowed value. */
+	public BigDecimal decimalValue() {
+		BigDecimal unscaled;
+		if (!overflow) {
+			if (radix == 10) return BigDecimal.valueOf(value, scale);
+			unscaled = BigDecimal.valueOf(value);
+		} else {
+			StringBuilder sb = new StringBuilder();
+			for (int i = digitsStart(lexeme, radix); i < lexeme.length(); i++) {
+				char c = lexeme.charAt(i);
+				if (Character.digit(c, radix) >= 0) sb.append(c);
+				else if (c != '.' && c != '_') break;
+			}
+			unscaled = new BigDecimal(new BigInteger(sb.toString(), radix));
+			if (radix == 10) return unscaled.movePointLeft(scale);
+		}
+		return scale == 0 ? unscaled : unscaled.divide(BigDecimal.valueOf(radix).pow(scale));   // exact for 2, 8 and 16.
+	}
+
+	/** skip the prefix 0x or 0b. */
+	private static int digitsStart(CharSequence s, int radix) {
+		return s.length() > 2 && s.charAt(0) == '0' && (radix == 16 || radix == 2) && Character.isLetter(s.charAt(1)) ? 2 : 0;
+	}
+
 	@SuppressWarnings("unchecked")
 	public Object clone() {
 		try {
@@ -48,7 +169,7 @@ public class Token implements Cloneable {
 		if (lexeme != null) {
 			sb.append("'").append(lexeme).append("'");
 		}
-		sb.append(", ").append(position);
+		sb.append(", ").append(position());
 		if (attributes != null)
 			sb.append(", attributes=").append(attributes);
 		sb.append(")");
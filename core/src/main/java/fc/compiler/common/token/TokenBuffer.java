@@ -0,0 +1,353 @@
+package fc.compiler.common.token;
+
+import fc.compiler.common.lexer.CodeReader;
+import fc.compiler.common.lexer.LexemeView;
+import fc.compiler.common.lexer.Lexer;
+import fc.compiler.common.lexer.LineMap;
+import fc.compiler.common.lexer.Position;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static fc.compiler.common.token.TokenKind.EOF;
+
+/**
+ * All tokens of one file in parallel arrays instead of one Token object per token.
+ * A token is the index of the arrays: kind id, offset and length of the lexeme,
+ * start of the lexeme text in one char pool, and flags with the radix of number literal.
+ * The decoded values of number literals are kept in side arrays, allocated at the first number literal.
+ * The rare attributes and explicit positions are kept aside by index.
+ * The lexemes of trivia, e.g. white spaces and comments, are not copied into the pool
+ * when the source is kept by the reader: they are read from the source by offset and length.
+ *
+ * Read it by a {@link Cursor} without allocation, or materialize a Token by {@link #token(int)} when needed.
+ * The buffer is cheap to keep for later passes, and can be read by TokenReader again and again.
+ * @author FC
+ */
+public class TokenBuffer {
+	public static final byte NO_LEXEME = 1;         // the lexeme of token is null.
+	public static final byte IN_SOURCE = 2;         // the lexeme is in the source at the offset, not in the pool.
+	public static final byte OVERFLOW = 4;          // the number literal does not fit in its value.
+	public static final TokenSet TRIVIA = TokenSet.of(TokenKind.WHITE_SPACES, TokenKind.LINE_TERMINATOR,
+			TokenKind.BLOCK_COMMENT, TokenKind.LINE_COMMENT, TokenKind.DOC_COMMENT);
+	public static final int RADIX_SHIFT = 3;        // the radix of number literal in the high bits of flags.
+
+	protected int[] kindIds;
+	protected int[] offsets;            // the start position of token in the whole source code.
+	protected int[] lengths;            // the length of lexeme.
+	protected int[] textStarts;         // the start of lexeme in text.
+	protected byte[] flags;
+	protected long[] values;            // the value of number literal, see Token.value(). null if none yet.
+	protected int[] scales;             // the scale of number literal.
+	protected int size;
+	protected char[] text;              // the lexemes one after another.
+	protected int textSize;
+	protected int deadText;             // the text of replaced tokens, still in the pool.
+	protected LineMap lines;
+	protected char[] source;            // the source of the trivia lexemes, null to copy them into the pool.
+	protected int sourceOffset;         // the position of source[0] in the whole source code.
+	protected Map<Integer, HashMap<String, Object>> attributes;   // by index, only the tokens with attributes.
+	protected Map<Integer, Position> positions;                  // by index, only the tokens not from lexer.
+
+	public TokenBuffer() { this(1024); }
+	public TokenBuffer(int capacity) {
+		capacity = Math.max(capacity, 16);
+		kindIds = new int[capacity];
+		offsets = new int[capacity];
+		lengths = new int[capacity];
+		textStarts = new int[capacity];
+		flags = new byte[capacity];
+		text = new char[capacity * 4];
+	}
+
+	/** scan all tokens of the reader including EOF. */
+	public static TokenBuffer of(Lexer lexer, CodeReader reader) {
+		TokenBuffer buffer = new TokenBuffer(reader.limit / 4);
+		if (reader.keepsSource()) {
+			buffer.source(reader.code, reader.offset);
+		}
+		Token t;
+		do {
+			t = lexer.scan(reader);
+			if (t != null) {    // null if lexical error reported.
+				buffer.add(t);
+			}
+		} while (t == null || !EOF.equals(t.kind()));
+		return buffer;
+	}
+
+	protected void ensureCapacity(int capacity) {
+		if (capacity > kindIds.length) {
+			int n = Math.max(kindIds.length * 2, capacity);
+			kindIds = Arrays.copyOf(kindIds, n);
+			offsets = Arrays.copyOf(offsets, n);
+			lengths = Arrays.copyOf(lengths, n);
+			textStarts = Arrays.copyOf(textStarts, n);
+			flags = Arrays.copyOf(flags, n);
+			if (values != null) {
+				values = Arrays.copyOf(values, n);
+				scales = Arrays.copyOf(scales, n);
+			}
+		}
+	}
+
+	protected void ensureNumbers() {
+		if (values == null) {
+			values = new long[kindIds.length];
+			scales = new int[kindIds.length];
+		}
+	}
+
+	public int add(Token token) {
+		ensureCapacity(size + 1);
+		int i = size++;
+		kindIds[i] = token.kindId();
+		offsets[i] = token.offset();
+		flags[i] = 0;
+		CharSequence lexeme = token.lexemeView();
+		if (lexeme == null) {
+			flags[i] |= NO_LEXEME;
+			lengths[i] = 0;
+		} else if (source != null && TRIVIA.contains(kindIds[i])) {
+			flags[i] |= IN_SOURCE;
+			lengths[i] = lexeme.length();
+		} else {
+			int length = lexeme.length();
+			if (textSize + length > text.length) {
+				text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + length));
+			}
+			for (int k = 0; k < length; k++) {
+				text[textSize + k] = lexeme.charAt(k);    // without creating the String.
+			}
+			lengths[i] = length;
+		}
+		flags[i] |= (byte) (token.radix() << RADIX_SHIFT);
+		if (token.radix() != 0) {
+			ensureNumbers();
+			values[i] = token.value();
+			scales[i] = token.scale();
+			if (token.overflow()) flags[i] |= OVERFLOW;
+		}
+		textStarts[i] = textSize;
+		textSize += pooledLength(i);
+
+		if (token.lines() != null) {
+			lines = token.lines();
+		}
+		if (token.attributes() != null) {
+			if (attributes == null) attributes = new HashMap<>();
+			attributes.put(i, token.attributes());
+		}
+		if (token.position != null) {
+			if (positions == null) positions = new HashMap<>();
+			positions.put(i, token.position);
+		}
+		return i;
+	}
+
+	/**
+	 * Replace the tokens [from, to) by all tokens of the other buffer,
+	 * and shift the offsets of the tokens after them by delta, e.g. for an edit of source code.
+	 * The text of the new tokens is appended to the pool, and the text in use is never moved,
+	 * so the lexemes of the tokens created before stay valid.
+	 * The trivia of other in its source are read from the source of this buffer, which must have the same text there.
+	 */
+	public void replace(int from, int to, TokenBuffer other, int delta) {
+		int n = other.size, tail = size - to, newSize = from + n + tail;
+		for (int i = from; i < to; i++) {
+			deadText += pooledLength(i);
+		}
+		if (source == null && other.source != null) {
+			source(other.source, other.sourceOffset);
+		}
+		if (deadText > textSize / 2) {
+			compactText(from, to);
+		}
+		int textFrom = textSize;
+		if (textSize + other.textSize > text.length) {
+			text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + other.textSize));
+		}
+		System.arraycopy(other.text, 0, text, textSize, other.textSize);
+		textSize += other.textSize;
+
+		if (other.values != null) {
+			ensureNumbers();
+		}
+		ensureCapacity(newSize);
+		if (n != to - from) {
+			for (Object array : new Object[] {kindIds, offsets, lengths, textStarts, flags, values, scales}) {
+				if (array != null) System.arraycopy(array, to, array, from + n, tail);
+			}
+		}
+		if (other.values != null) {
+			System.arraycopy(other.values, 0, values, from, n);
+			System.arraycopy(other.scales, 0, scales, from, n);
+		}
+		System.arraycopy(other.kindIds, 0, kindIds, from, n);
+		System.arraycopy(other.offsets, 0, offsets, from, n);
+		System.arraycopy(other.lengths, 0, lengths, from, n);
+		System.arraycopy(other.flags, 0, flags, from, n);
+		for (int i = 0; i < n; i++) {
+			textStarts[from + i] = other.textStarts[i] + textFrom;
+		}
+		if (delta != 0) {
+			for (int i = from + n; i < newSize; i++) {
+				offsets[i] += delta;
+			}
+		}
+
+		attributes = replace(attributes, from, to, other.attributes, n);
+		positions = replace(positions, from, to, other.positions, n);
+		size = newSize;
+		if (other.lines != null) {
+			lines = other.lines;
+		}
+	}
+
+	/** remove the tokens from index size. */
+	public void truncate(int size) {
+		for (int i = size; i < this.size; i++) {
+			deadText += pooledLength(i);
+			if (attributes != null) attributes.remove(i);
+			if (positions != null) positions.remove(i);
+		}
+		this.size = Math.min(size, this.size);
+	}
+
+	/**
+	 * Read the lexemes of trivia added from now on from the source instead of copying them,
+	 * and the ones in the source from this source, e.g. after an edit.
+	 * @param sourceOffset the position of source[0] in the whole source code.
+	 */
+	public TokenBuffer source(char[] source, int sourceOffset) {
+		this.source = source;
+		this.sourceOffset = sourceOffset;
+		return this;
+	}
+
+	/** the line map to resolve the positions, e.g. of the whole file after stitching chunks. */
+	public TokenBuffer lines(LineMap lines) {
+		this.lines = lines;
+		return this;
+	}
+
+	/** copy the text of tokens in use except [from, to) into a new pool. */
+	private void compactText(int from, int to) {
+		char[] newText = new char[text.length];
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == from) i = to;
+			if (i == size) break;
+			int length = pooledLength(i);
+			System.arraycopy(text, textStarts[i], newText, newSize, length);
+			textStarts[i] = newSize;
+			newSize += length;
+		}
+		text = newText;
+		textSize = newSize;
+		deadText = 0;
+	}
+
+	private static <V> Map<Integer, V> replace(Map<Integer, V> map, int from, int to, Map<Integer, V> other, int n) {
+		if (map == null && other == null) {
+			return null;
+		}
+		Map<Integer, V> result = new HashMap<>();
+		if (map != null) {
+			map.forEach((i, v) -> {
+				if (i < from) result.put(i, v);
+				else if (i >= to) result.put(i - to + from + n, v);
+			});
+		}
+		if (other != null) {
+			other.forEach((i, v) -> result.put(i + from, v));
+		}
+		return result;
+	}
+
+	public int size() { return size; }
+	public int kindId(int i) { return kindIds[i]; }
+	public String kind(int i) { return TokenKinds.name(kindIds[i]); }
+	public int offset(int i) { return offsets[i]; }
+	public int length(int i) { return lengths[i]; }
+	public int radix(int i) { return (flags[i] & 0xFF) >>> RADIX_SHIFT; }
+	public char lexemeChar(int i, int index) { return chars(i)[start(i) + index]; }
+
+	public String lexeme(int i) {
+		return (flags[i] & NO_LEXEME) != 0 ? null : new String(chars(i), start(i), lengths[i]);
+	}
+
+	/** the characters of lexeme: the source for trivia in it, or the pool. */
+	protected char[] chars(int i) {
+		return (flags[i] & IN_SOURCE) != 0 ? source : text;
+	}
+
+	protected int start(int i) {
+		return (flags[i] & IN_SOURCE) != 0 ? offsets[i] - sourceOffset : textStarts[i];
+	}
+
+	/** the length of lexeme in the pool. */
+	protected int pooledLength(int i) {
+		return (flags[i] & IN_SOURCE) != 0 ? 0 : lengths[i];
+	}
+
+	/** compare the lexeme without creating a String. */
+	public boolean lexemeEquals(int i, String s) {
+		if ((flags[i] & NO_LEXEME) != 0 || lengths[i] != s.length()) {
+			return false;
+		}
+		char[] chars = chars(i);
+		for (int k = 0, start = start(i); k < s.length(); k++) {
+			if (chars[start + k] != s.charAt(k)) return false;
+		}
+		return true;
+	}
+
+	public Position position(int i) {
+		Position position = positions == null ? null : positions.get(i);
+		return position == null && lines != null ? lines.position(offsets[i]) : position;
+	}
+
+	/** create the Token object of the token at index i. */
+	@SuppressWarnings("unchecked")
+	public Token token(int i) {
+		CharSequence lexeme = (flags[i] & NO_LEXEME) != 0 ? null : LexemeView.of(chars(i), start(i), lengths[i]);
+		Token t = new Token().kind(kind(i)).lexeme(lexeme).offset(offsets[i]).lines(lines);
+		t.kindId = kindIds[i];
+		if (radix(i) != 0) {
+			t.number(radix(i), values[i], scales[i], (flags[i] & OVERFLOW) != 0);
+		}
+		if (attributes != null && attributes.containsKey(i)) {
+			t.attributes((HashMap<String, Object>) attributes.get(i).clone());
+		}
+		if (positions != null) {
+			t.position(positions.get(i));
+		}
+		return t;
+	}
+
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/** a view of one token of the buffer at a time. */
+	public class Cursor {
+		protected int index;
+
+		public int index() { return index; }
+		public Cursor index(int index) { this.index = index; return this; }
+		public boolean hasNext() { return index + 1 < size; }
+		public Cursor next() { index++; return this; }
+
+		public int kindId() { return kindIds[index]; }
+		public String kind() { return TokenBuffer.this.kind(index); }
+		public boolean is(TokenSet kinds) { return kinds.contains(kindIds[index]); }
+		public int offset() { return offsets[index]; }
+		public int length() { return lengths[index]; }
+		public String lexeme() { return TokenBuffer.this.lexeme(index); }
+		public boolean lexemeEquals(String s) { return TokenBuffer.this.lexemeEquals(index, s); }
+		public Position position() { return TokenBuffer.this.position(index); }
+		public Token token() { return TokenBuffer.this.token(index); }
+	}
+}
@@ -74,6 +74,7 @@ public interface TokenKind {
 	public static final String MINUS_MINUS = "MINUS_MINUS";
 	public static final String STAR = "STAR";
 	public static final String STAR_EQUAL = "STAR_EQUAL";
+	public static final String STAR_STAR = "STAR_STAR";     // "**" exponentiation in COBOL.
 	public static final String SLASH = "SLASH";
 	public static final String SLASH_EQUAL = "SLASH_EQUAL";
 	public static final String AMPERSAND = "AMPERSAND";
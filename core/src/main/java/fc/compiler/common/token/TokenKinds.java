@@ -0,0 +1,67 @@
+package fc.compiler.common.token;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of token kinds, which gives each kind a dense int id from 0.
+ * The kinds in TokenKind are registered first. Other kinds are registered on first use,
+ * or at once by {@link #registerAll(Class)}, e.g. CobolTokenKind.
+ * The ids are only valid in the running JVM; do not persist them.
+ * @author FC
+ */
+public final class TokenKinds {
+	private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private static volatile String[] names = new String[256];
+	private static volatile int count;
+
+	static {
+		registerAll(TokenKind.class);
+	}
+
+	private TokenKinds() {}
+
+	/** @return the id of the token kind, registered if new. */
+	public static int id(String kind) {
+		Integer id = ids.get(kind);
+		return id != null ? id : register(kind);
+	}
+
+	private static synchronized int register(String kind) {
+		Integer id = ids.get(kind);
+		if (id != null) {
+			return id;
+		}
+		if (count == names.length) {
+			names = Arrays.copyOf(names, count * 2);
+		}
+		names[count] = kind;
+		ids.put(kind, count);
+		return count++;
+	}
+
+	/** register all String constants of the class, e.g. a TokenKind interface. */
+	public static void registerAll(Class<?> kinds) {
+		try {
+			for (Field field : kinds.getFields()) {
+				if (field.getType() == String.class && Modifier.isStatic(field.getModifiers())) {
+					id((String) field.get(null));
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static String name(int id) {
+		return names[id];
+	}
+
+	/** @return the number of registered kinds. all ids are less than it. */
+	public static int count() {
+		return count;
+	}
+}
@@ -0,0 +1,71 @@
+package fc.compiler.common.token;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable set of token kinds as a bitset of their ids.
+ * Build it once, e.g. as a static final field of a parser, so that a membership test is one bit test.
+ * @author FC
+ */
+public final class TokenSet {
+	public static final TokenSet EMPTY = of();
+
+	private final long[] words;
+	private final String[] kinds;       // for messages.
+
+	private TokenSet(String[] kinds) {
+		this.kinds = kinds;
+		int max = -1;
+		int[] ids = new int[kinds.length];
+		for (int i = 0; i < kinds.length; i++) {
+			ids[i] = TokenKinds.id(kinds[i]);
+			max = Math.max(max, ids[i]);
+		}
+		this.words = new long[max < 0 ? 0 : (max >>> 6) + 1];
+		for (int id : ids) {
+			words[id >>> 6] |= 1L << id;
+		}
+	}
+
+	public static TokenSet of(String... kinds) {
+		return new TokenSet(new LinkedHashSet<>(Arrays.asList(kinds)).toArray(new String[0]));
+	}
+
+	public TokenSet union(TokenSet other) {
+		Set<String> union = new LinkedHashSet<>(Arrays.asList(kinds));
+		union.addAll(Arrays.asList(other.kinds));
+		return new TokenSet(union.toArray(new String[0]));
+	}
+
+	public TokenSet with(String... kinds) {
+		return union(of(kinds));
+	}
+
+	public boolean contains(int kindId) {
+		int word = kindId >>> 6;
+		return word < words.length && (words[word] & (1L << kindId)) != 0;
+	}
+
+	public boolean contains(Token token) {
+		return contains(token.kindId());
+	}
+
+	public boolean contains(String kind) {
+		return contains(TokenKinds.id(kind));
+	}
+
+	public boolean isEmpty() {
+		return kinds.length == 0;
+	}
+
+	public int size() {
+		return kinds.length;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(kinds);
+	}
+}
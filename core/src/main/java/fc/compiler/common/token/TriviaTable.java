@@ -0,0 +1,45 @@
+package fc.compiler.common.token;
+
+import fc.compiler.common.lexer.CodeReader;
+
+import java.util.Arrays;
+
+/**
+ * The ranges of white spaces, line terminators and comments skipped by a lexer in the skipTrivia mode,
+ * as (offset, length, kind id) entries in the order of source code.
+ * For the tools which need the trivia, e.g. formatters and source-to-source translators.
+ * @author FC
+ */
+public class TriviaTable {
+	protected int[] offsets = new int[256];     // the start position in the whole source code.
+	protected int[] lengths = new int[256];     // the length in source code, including skipped areas of fixed format.
+	protected int[] kindIds = new int[256];
+	protected int size;
+
+	/** add the current lexeme of the reader. */
+	public void add(String kind, CodeReader reader) {
+		add(TokenKinds.id(kind), reader.offset + reader.sp, Math.min(reader.bp, reader.limit) - reader.sp);
+	}
+
+	public void add(int kindId, int offset, int length) {
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+			kindIds = Arrays.copyOf(kindIds, size * 2);
+		}
+		offsets[size] = offset;
+		lengths[size] = length;
+		kindIds[size] = kindId;
+		size++;
+	}
+
+	public int size() { return size; }
+	public int offset(int i) { return offsets[i]; }
+	public int length(int i) { return lengths[i]; }
+	public int kindId(int i) { return kindIds[i]; }
+	public String kind(int i) { return TokenKinds.name(kindIds[i]); }
+
+	public void clear() {
+		size = 0;
+	}
+}
@@ -5,4 +5,7 @@ package fc.compiler.language.cobol;
  */
 public class CobolCompilerOptions {
 	public boolean debugMode = false;
+	public boolean dfaLexer = false;    // scan by the compiled token rules before the lexer mapper.
+	public boolean switchDispatch = false;  // dispatch by a switch over the character instead of the lexer mapper.
+	public boolean fixedFormat = false; // card image source code read by FixedFormatCodeReader.
 }
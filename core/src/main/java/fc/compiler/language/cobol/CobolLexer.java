@@ -2,11 +2,13 @@ package fc.compiler.language.cobol;
 
 import fc.compiler.common.lexer.*;
 import fc.compiler.common.token.Token;
-import fc.compiler.common.token.TokenKind;
+import fc.compiler.common.token.TokenKinds;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static fc.compiler.common.lexer.Constants.*;
 import static fc.compiler.common.lexer.Constants.CR;
@@ -25,17 +27,144 @@ import static fc.compiler.language.cobol.CobolTokenKind.*;
  */
 @Slf4j
 public class CobolLexer extends LexerBase {
+	public static final CharClass WORD_START = CharClass.LETTER_OR_DIGIT;
+	public static final CharClass WORD_PART = CharClass.LETTER_OR_DIGIT.or('-', '_');
+	public static final CharClass ALPHABETIC_CHARS = CharClass.LETTER.or(' ');
+	/**
+	 * the national characters of NetCOBOL which can start a word, by code point range: Hiragana and Katakana
+	 * without the middle dot, CJK ideographs, fullwidth digits and letters, halfwidth Katakana.
+	 * The fullwidth punctuation, e.g. （）＝, separates words as its halfwidth form does.
+	 */
+	public static final char[][] NATIONAL_RANGES = { {'\u3040', '\u30FA'}, {'\u30FC', '\u30FF'}, {'\u4E00', '\u9FFF'},
+			{'\uFF10', '\uFF19'}, {'\uFF21', '\uFF3A'}, {'\uFF41', '\uFF5A'}, {'\uFF66', '\uFF9F'} };
+	public static final char NATIONAL_HYPHEN = '\uFF0D';
+	public static final CharClass NATIONAL_CHARS = CharClass.bmp(CobolLexer::isNationalChar);
+	public static final CharClass NATIONAL_WORD_PART = CharClass.bmp(c -> WORD_PART.test(c) || isNationalChar(c) || c == NATIONAL_HYPHEN);
+	/** the characters which must not start or end a word. */
+	public static final CharClass WORD_JOINERS = CharClass.of(c -> c == '-' || c == '_' || c == NATIONAL_HYPHEN);
+	public static final CharClass SEPARATOR_SPACE = CharClass.of(c -> Character.isWhitespace(c) && c != CR && c != LF);
+
 	protected CobolCompilerOptions options;
 	@Getter protected boolean previousTokenLineTerminator = true;
 
-	public CobolLexer() {
+	public CobolLexer() { this(new CobolCompilerOptions()); }
+	public CobolLexer(CobolCompilerOptions options) {
+		this.options = options;
 		this.mapper = initLexerMapper();
 		initReservedKeywords();
+		this.switchDispatch = options.switchDispatch;
+		if (options.dfaLexer) {
+			this.dfa = dfaLexer();
+		}
+	}
+
+	private static DfaLexer dfaLexer;
+
+	/**
+	 * The same lexers as the mapper by a switch if switchDispatch is set,
+	 * so that each case is a direct call which the JIT can inline. Keep it in sync with initLexerMapper(),
+	 * LexerBaseTest.switchDispatchAscii compares them for all ASCII characters.
+	 */
+	@Override
+	protected Token dispatch(CodeReader reader) {
+		if (!switchDispatch) {
+			return super.dispatch(reader);
+		}
+		char ch = reader.ch;
+		switch (ch) {
+			case SPACE: case TAB: case FF: return scanWhiteSpaces(reader);
+			case LF: case CR: return scanLineTerminator(reader);
+			case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9':
+				return onDigit(reader);
+			case ',': return onComma(reader);
+			case ';': return onSemicolon(reader);
+			case '.': return onPeriod(reader);
+			case '(': return scanLeftParen(reader);
+			case ')': return scanRightParen(reader);
+			case ':': return scanColon(reader);
+			case '&': return scanSingleCharToken(reader, AMPERSAND);
+			case '=': return onEqual(reader);
+			case '*': return onStar(reader);
+			case '+': return scanSingleCharToken(reader, PLUS);
+			case '-': return scanSingleCharToken(reader, MINUS);
+			case '/': return scanSingleCharToken(reader, SLASH);
+			case '>': return onGT(reader);
+			case '<': return onLT(reader);
+			case '\'': return scanSingleQuote(reader);
+			case '\"': return scanDoubleQuote(reader);
+			case Constants.EOF: return scanEOF(reader);
+			default:
+				if (('a' <= ch && ch <= 'z') || ('A' <= ch && ch <= 'Z')) {
+					return scanIdentifier(reader);
+				}
+				return super.dispatch(reader);
+		}
+	}
+
+	public static synchronized DfaLexer dfaLexer() {
+		if (dfaLexer == null) {
+			dfaLexer = initTokenRules().compile();
+		}
+		return dfaLexer;
+	}
+
+	/**
+	 * The same tokens as the lexer mapper with the reserved keywords compiled in.
+	 * Line terminators, separators, literals and comments are left to the mapper.
+	 */
+	public static TokenRules initTokenRules() {
+		initReservedKeywords();
+		Map<String, String> keywords = new LinkedHashMap<>();
+		reservedKeywords.forEach((word, kind) -> {
+			if (CharClass.LETTER.test(word.charAt(0)) && word.chars().allMatch(c -> WORD_PART.test((char) c))) {
+				keywords.put(word, kind);
+			}
+		});
+
+		TokenPattern letter = TokenPattern.of(CharClass.LETTER);
+		TokenPattern digits = TokenPattern.of(CharClass.DEC_DIGIT).some();
+		TokenPattern wordParts = TokenPattern.of(WORD_PART).many();
+		// the words with national characters as scanIdentifier() and scanNationalWord().
+		TokenPattern national = TokenPattern.of(NATIONAL_CHARS);
+		TokenPattern nationalParts = TokenPattern.of(NATIONAL_WORD_PART).many();
+		TokenPattern nationalEnd = TokenPattern.of(WORD_START.or(NATIONAL_CHARS));
+		return new TokenRules()
+				.rule(WHITE_SPACES, TokenPattern.of(CharClass.WHITESPACE).some())
+				.keywords(keywords, true)
+				.rule(IDENTIFIER, letter.then(nationalParts.then(nationalEnd).optional()))
+				.rule(letter.then(nationalParts).then(TokenPattern.of(WORD_JOINERS)), CobolLexer::scanIdentifier)
+				.rule(IDENTIFIER, national.then(nationalParts.then(nationalEnd).optional()))
+				.rule(national.then(nationalParts).then(TokenPattern.of(WORD_JOINERS)), CobolLexer::scanNationalWord)
+				.rule(NUMBER_LITERAL, digits.then(TokenPattern.text(".").then(TokenPattern.of(CharClass.DEC_DIGIT).some()).optional()),
+						token -> token.number(10))
+				.rule(IDENTIFIER, digits.then(TokenPattern.of(CharClass.LETTER.or('-', '_'))).then(wordParts))
+
+				.literal("(", LEFT_PAREN).literal(")", RIGHT_PAREN)
+				.literal(":", COLON).literal("&", AMPERSAND)
+				.literal("=", EQUAL).literal("==", "PSEUDO_TEXT")
+				.literal(">", GT).literal(">=", GT_EQUAL)
+				.literal("<", LT).literal("<=", LT_EQUAL).literal("<>", NOT_EQUAL);
+	}
+
+	/**
+	 * Lex a large source file in parallel chunks.
+	 * Fixed-format source code is not split before continuation lines, so that literals and words continued
+	 * stay in one chunk. Each chunk starts at a line start, where previousTokenLineTerminator is true.
+	 */
+	public static ParallelLexer parallelLexer(CobolCompilerOptions options) {
+		if (options.fixedFormat) {
+			return new ParallelLexer(() -> new CobolLexer(options), FixedFormatCodeReader::new,
+					(code, lineStart) -> !FixedFormatCodeReader.isContinuationLine(code, lineStart));
+		} else {
+			return new ParallelLexer(() -> new CobolLexer(options), CodeReader::new, ParallelLexer.ANY_LINE);
+		}
 	}
 
 	public Token scan(CodeReader reader) {
+		if (skipTrivia) {
+			skipAllTrivia(reader);
+		}
 		reader.sp = reader.bp;
-		reader.newPosition();
 		if (reader.isEndOfLine()) {
 			previousTokenLineTerminator = true;
 			return scanLineTerminator(reader);
@@ -49,7 +178,7 @@ public class CobolLexer extends LexerBase {
 				case 'D':
 					if (!options.debugMode) {
 						reader.skipToEndOfLine();
-						return new Token("IGNORED DEBUG CODE", reader.position).lexeme(reader.lexeme());
+						return new Token("IGNORED DEBUG CODE", reader).lexeme(reader.lexemeView());
 					} else { // ignore this character.
 						reader.nextChar();
 						break;
@@ -65,6 +194,56 @@ public class CobolLexer extends LexerBase {
 		return super.scan(reader);
 	}
 
+	@Override
+	public Object saveState() {
+		return previousTokenLineTerminator;
+	}
+
+	@Override
+	public void restoreState(Object state) {
+		previousTokenLineTerminator = (Boolean) state;
+	}
+
+	/** also comment lines and debug lines by the indicator at the start of line. */
+	@Override
+	protected String skipTriviaToken(CodeReader reader) {
+		if (reader.isEndOfLine()) {
+			previousTokenLineTerminator = true;
+			reader.acceptLineTerminator();
+			return LINE_TERMINATOR;
+		} else if (previousTokenLineTerminator) {
+			switch (reader.ch) {
+				case '*':
+				case '/':
+					previousTokenLineTerminator = false;
+					reader.skipToEndOfLine();
+					return LINE_COMMENT;
+				case 'D':
+					if (!options.debugMode) {
+						previousTokenLineTerminator = false;
+						reader.skipToEndOfLine();
+						return "IGNORED DEBUG CODE";
+					}
+					return null;    // left to scan() to ignore the indicator.
+				default:
+					if (!CharClass.WHITESPACE.test(reader.ch)) {
+						return null;
+					}
+					previousTokenLineTerminator = false;
+			}
+		}
+		if (reader.ch == '*') {     // inline comment "*>".
+			int mark = reader.mark();
+			reader.nextChar();
+			if (reader.ch == '>') {
+				reader.skipToEndOfLine();
+				return LINE_COMMENT;
+			}
+			reader.reset(mark);
+		}
+		return super.skipTriviaToken(reader);
+	}
+
 	public LexerMapper initLexerMapper() {
 		LexerMapper mapper = new LexerMapper();
 		mapper.mapLexer(Constants.EOF,    LexerBase::scanEOF);
@@ -88,11 +267,11 @@ public class CobolLexer extends LexerBase {
 		mapper.mapLexer(':', LexerBase::scanColon);	    // Colon
 		mapper.mapLexer('&', reader -> scanSingleCharToken(reader, AMPERSAND));	// Ampersand
 		mapper.mapLexer('=', CobolLexer::onEqual);	// Equal sign
-		mapper.mapLexer('*', LexerBase::scanLineComment);	// Asterisk
+		mapper.mapLexer('*', CobolLexer::onStar);	// Asterisk
 
-//		mapper.mapLexer('+', );	// Plus sign
-//		mapper.mapLexer('-', );	// Minus sign or hyphen
-//		mapper.mapLexer('/', );	// Slash
+		mapper.mapLexer('+', reader -> scanSingleCharToken(reader, PLUS));	// Plus sign
+		mapper.mapLexer('-', reader -> scanSingleCharToken(reader, MINUS));	// Minus sign or hyphen
+		mapper.mapLexer('/', reader -> scanSingleCharToken(reader, SLASH));	// Slash
 //		mapper.mapLexer('$', );	// Dollar sign
 		mapper.mapLexer('>', CobolLexer::onGT);	// Greater-than sign
 		mapper.mapLexer('<', CobolLexer::onLT);	// Less-than sign
@@ -101,16 +280,21 @@ public class CobolLexer extends LexerBase {
 		mapper.mapLexer('\'', CobolLexer::scanSingleQuote);
 		mapper.mapLexer('\"', LexerBase::scanDoubleQuote);
 
+		for (char[] range : NATIONAL_RANGES) {
+			mapper.mapLexer(range[0], range[1], CobolLexer::scanNationalWord);
+		}
+
 		mapper.setDefaultLexer(LexerBase::scanDummy);
 		return mapper;
 	}
 
-	public void initReservedKeywords() {
+	public static void initReservedKeywords() {
 		try {
 			for (Field field : CobolTokenKind.class.getFields()) {
 				if (field.getType().equals(String.class)) {
 					String keyword = (String) field.get(null);
 					reservedKeywords.put(keyword, keyword);
+					TokenKinds.id(keyword);
 				}
 			}
 		} catch (IllegalAccessException e) {
@@ -153,12 +337,24 @@ public class CobolLexer extends LexerBase {
 		return scanSeparator(reader, '.', SEPARATOR_PERIOD);
 	}
 
+	/** "*>" inline comment, "**" exponentiation or "*" multiplication. */
+	public static Token onStar(CodeReader reader) {
+		reader.accept('*');
+		if (reader.ch == '>') {
+			reader.skipToEndOfLine();
+			return new Token(LINE_COMMENT, reader).lexeme(reader.lexemeView());
+		} else if (reader.accept('*')) {
+			return new Token(STAR_STAR, reader).lexeme("**");
+		}
+		return new Token(STAR, reader).lexeme("*");
+	}
+
 	public static Token scanSeparator(CodeReader reader, char leadingChar, String tokenKind) {
 		reader.accept(leadingChar);
 		if (Character.isWhitespace(reader.ch) || reader.ch == Constants.EOF) {
-			reader.nextChar();
-			for (; Character.isWhitespace(reader.ch); reader.nextChar()) {}
-			return new Token(tokenKind, reader.position).lexeme(reader.lexeme());
+			// the line terminator is left for scan() to recognize the indicator area of next line.
+			reader.skipWhile(SEPARATOR_SPACE);
+			return new Token(tokenKind, reader).lexeme(reader.lexemeView());
 		} else {
 			return lexError(reader, "Separator " + leadingChar + " is not followed by space");
 		}
@@ -168,29 +364,29 @@ public class CobolLexer extends LexerBase {
 		reader.accept('=');
 		if (reader.accept('=')) {
 			/** The == pseudo-text delimiter */
-			return new Token("PSEUDO_TEXT", reader.position).lexeme(reader.lexeme());
+			return new Token("PSEUDO_TEXT", reader).lexeme(reader.lexemeView());
 		} else {
-			return new Token(EQUAL, reader.position).lexeme(reader.lexeme());
+			return new Token(EQUAL, reader).lexeme(reader.lexemeView());
 		}
 	}
 
 	private static Token onGT(CodeReader reader) {
 		reader.accept('>');
 		if (reader.accept('=')) {
-			return new Token(GT_EQUAL, reader.position).lexeme(reader.lexeme());
+			return new Token(GT_EQUAL, reader).lexeme(reader.lexemeView());
 		} else {
-			return new Token(GT, reader.position).lexeme(reader.lexeme());
+			return new Token(GT, reader).lexeme(reader.lexemeView());
 		}
 	}
 
 	private static Token onLT(CodeReader reader) {
 		reader.accept('<');
 		if (reader.accept('=')) {
-			return new Token(LT_EQUAL, reader.position).lexeme(reader.lexeme());
+			return new Token(LT_EQUAL, reader).lexeme(reader.lexemeView());
 		} else if (reader.accept('>')) {
-			return new Token(NOT_EQUAL, reader.position).lexeme(reader.lexeme());
+			return new Token(NOT_EQUAL, reader).lexeme(reader.lexemeView());
 		} else {
-			return new Token(LT, reader.position).lexeme(reader.lexeme());
+			return new Token(LT, reader).lexeme(reader.lexemeView());
 		}
 	}
 
@@ -236,48 +432,80 @@ public class CobolLexer extends LexerBase {
 	 */
 	public static Token scanIdentifier(CodeReader reader) {
 		char prev = reader.ch;
-		if (!reader.accept(CobolLexer::isLetterOrDigit)) {
+		if (!reader.accept(WORD_START)) {
 			return lexError(reader, "invalid identifier start character");
 		}
 
-		for (; isIdentifierPart(reader.ch); reader.nextChar()) {
+		for (; NATIONAL_WORD_PART.test(reader.ch); reader.nextChar()) {
 			prev = reader.ch;
 		}
 
-		if ('-' == prev || '_' == prev) {
+		if (WORD_JOINERS.test(prev)) {
 			return lexError(reader, "an identifier must not end with '-' or '_'");
 		}
 
-		String lexeme = reader.lexeme();
-		String uppercase = lexeme.toUpperCase();
-		return new Token(TokenKind.reservedKeywords.getOrDefault(uppercase, IDENTIFIER),
-				reader.position).lexeme(lexeme);
+		KeywordMatcher keywords = Keywords.MATCHER;
+		int slot = keywords.find(reader);
+		if (slot < 0) {
+			return new Token(IDENTIFIER, reader).lexeme(reader.names.intern(reader));
+		}
+		String lexeme = keywords.isExact(reader, slot) ? keywords.text(slot) : reader.names.intern(reader);
+		return new Token(keywords.kind(slot), reader).lexeme(lexeme);
 	}
 
+	public static boolean isNationalChar(char c) {
+		for (char[] range : NATIONAL_RANGES) {
+			if (c >= range[0] && c <= range[1]) return true;
+		}
+		return false;
+	}
+
+	/** a user-defined word with national characters, e.g. 顧客-名. never a keyword. */
+	public static Token scanNationalWord(CodeReader reader) {
+		char prev = reader.ch;
+		for (; NATIONAL_WORD_PART.test(reader.ch); reader.nextChar()) {
+			prev = reader.ch;
+		}
+		if (WORD_JOINERS.test(prev)) {
+			return lexError(reader, "an identifier must not end with '-' or '_'");
+		}
+		return new Token(IDENTIFIER, reader).lexeme(reader.names.intern(reader));
+	}
+
+	/** the reserved keywords, built on first use. */
+	private static final class Keywords {
+		static final KeywordMatcher MATCHER;
+		static {
+			initReservedKeywords();
+			MATCHER = new KeywordMatcher(reservedKeywords);
+		}
+	}
+
+	/** the period after a number is a decimal point only if a digit follows, e.g. not in "COMPUTE X = Y ** 2." */
 	public static Token onDigit(CodeReader reader) {
 		reader.acceptDigits();
-		if (reader.accept('.')) {
+		int mark = reader.mark();
+		if (reader.accept('.') && CharClass.DEC_DIGIT.test(reader.ch)) {
 			reader.acceptDigits();
-			return new Token(NUMBER_LITERAL, reader.position).lexeme(reader.lexeme());
-		} else if (isIdentifierPart(reader.ch)) {
-			while (reader.accept(CobolLexer::isIdentifierPart)) {}
-			return new Token(IDENTIFIER, reader.position).lexeme(reader.lexeme());
+			return new Token(NUMBER_LITERAL, reader).lexeme(reader.lexemeView()).number(10);
+		}
+		reader.reset(mark);
+		if (reader.skipWhile(WORD_PART)) {
+			return new Token(IDENTIFIER, reader).lexeme(reader.lexemeView());
 		} else {
-			return new Token(NUMBER_LITERAL, reader.position).lexeme(reader.lexeme());
+			return new Token(NUMBER_LITERAL, reader).lexeme(reader.lexemeView()).number(10);
 		}
 	}
 
 	public static boolean isLetterOrDigit(char ch) {
-		return     '0' <= ch && ch <= '9'
-				|| 'a' <= ch && ch <= 'z'
-				|| 'A' <= ch && ch <= 'Z';
+		return WORD_START.test(ch);
 	}
 
 	public static boolean isIdentifierPart(char ch) {
-		return isLetterOrDigit(ch) || '-' == ch || '_' == ch;
+		return WORD_PART.test(ch);
 	}
 
 	public static boolean isAlphabetic(char ch) {
-		return 'a' <= ch && ch <= 'z' || 'A' <= ch && ch <= 'Z' || ' ' == ch;
+		return ALPHABETIC_CHARS.test(ch);
 	}
 }
@@ -2,15 +2,17 @@ package fc.compiler.language.cobol;
 
 import fc.compiler.common.ast.AstNode;
 import fc.compiler.common.ast.Expression;
-import fc.compiler.common.ast.ExpressionBase;
 import fc.compiler.common.ast.Statement;
 import fc.compiler.common.ast.expression.*;
 import fc.compiler.common.ast.statement.*;
+import fc.compiler.common.parser.OperatorTable;
 import fc.compiler.common.parser.Parser;
 import fc.compiler.common.parser.ParserBase;
 import fc.compiler.common.parser.ParserRegistry;
+import fc.compiler.common.parser.PredictiveTable;
 import fc.compiler.common.parser.TokenReader;
 import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenSet;
 import fc.compiler.language.cobol.ast.CharacterString;
 import fc.compiler.language.cobol.ast.CobolProgram;
 import fc.compiler.language.cobol.ast.clause.*;
@@ -67,10 +69,37 @@ import static fc.compiler.language.cobol.CobolTokenKind.*;
  */
 @Slf4j
 public class CobolParser extends ParserBase {
+	public static final TokenSet LITERALS = TokenSet.of(NUMBER_LITERAL, STRING_LITERAL);
+	public static final TokenSet IS_ARE = TokenSet.of(IS, ARE);
+	public static final TokenSet AND_OR = TokenSet.of(AND, OR);
+	/** the tokens which start a relational operator. */
+	public static final TokenSet RELATIONAL_OPERATORS = TokenSet.of(
+			IS, ARE, GREATER, LESS, EQUAL, GT, GT_EQUAL, LT, LT_EQUAL, NOT_EQUAL);
+	public static final TokenSet FIGURATIVE_ZERO = TokenSet.of(ZERO, ZEROS, ZEROES);
+	// -- synchronizing sets to recover from syntax errors --
+	public static final TokenSet DIVISION_HEADERS = TokenSet.of(IDENTIFICATION, ID, ENVIRONMENT, DATA, PROCEDURE);
+	public static final TokenSet SECTION_HEADERS = TokenSet.of(FILE, WORKING_STORAGE, LOCAL_STORAGE, LINKAGE);
+	public static final TokenSet PROCEDURE_HEADER = TokenSet.of(PROCEDURE);
+	public static final TokenSet SCOPE_TERMINATORS = TokenSet.of(
+			ELSE, END_IF, END_EVALUATE, END_PERFORM, END_CALL, END_COMPUTE, END);
+	/** the end of a data description entry, or of the sections of data division. */
+	public static final TokenSet ENTRY_SYNC = DIVISION_HEADERS.union(SECTION_HEADERS).with(SEPARATOR_PERIOD);
+	// -- parsing contexts --
+	public static final int DATA_ENTRY_CONTEXT = ParserRegistry.newContextId();     // the clauses of data description entry.
+	public static final int STATEMENT_CONTEXT = ParserRegistry.newContextId();      // the statements of procedure division.
+	public static final int EXPRESSION_CONTEXT = ParserRegistry.newContextId();     // the operands of arithmetic expression.
+	/** the arithmetic operators. the unary ones bind tightest, and the exponentiation is right associative. */
+	public static final OperatorTable ARITHMETIC_OPERATORS = new OperatorTable()
+			.binary(1, OperatorTable.Associativity.LEFT, PLUS, MINUS)
+			.binary(2, OperatorTable.Associativity.LEFT, STAR, SLASH)
+			.binary(3, OperatorTable.Associativity.RIGHT, STAR_STAR)
+			.prefix(4, PLUS, MINUS)
+			.group(LEFT_PAREN, RIGHT_PAREN);
+
 	CobolCompilerOptions options;
 
 	public static ParserRegistry initRegistry() {
-		ParserRegistry map = new ParserRegistry();
+		ParserRegistry map = new ParserRegistry().operators(ARITHMETIC_OPERATORS);
 
 		map.put(LINE_TERMINATOR, ParserBase::ignore);
 		map.put(WHITE_SPACES, ParserBase::ignore);
@@ -90,6 +119,30 @@ public class CobolParser extends ParserBase {
 		map.put(DISPLAY, CobolParser::parseDisplayClause);
 
 		map.put(IDENTIFIER, CobolParser::parseIdentifier);
+
+		map.context(DATA_ENTRY_CONTEXT, PredictiveTable.builder("data-description-entry")
+				.rule("picture-clause", TokenSet.of(PIC, PICTURE), CobolParser::parsePictureClause)
+				.rule("value-clause", TokenSet.of(VALUE), CobolParser::parseValueClause)
+				.sync(ENTRY_SYNC)
+				.build());
+		map.context(STATEMENT_CONTEXT, PredictiveTable.builder("statement")
+				.rule("if-statement", TokenSet.of(IF), CobolParser::parseIfStatement)
+				.rule("evaluate-statement", TokenSet.of(EVALUATE), CobolParser::parseEvaluateStatement)
+				.rule("continue-statement", TokenSet.of(CONTINUE), CobolParser::parseContinueStatement)
+				.rule("goto-statement", TokenSet.of(GO), CobolParser::parseGotoStatement)
+				.rule("exit-statement", TokenSet.of(EXIT), CobolParser::parseExitStatement)
+				.rule("stop-statement", TokenSet.of(STOP), CobolParser::parseStopStatement)
+				.rule("call-statement", TokenSet.of(CALL), CobolParser::parseCallStatement)
+				.rule("compute-statement", TokenSet.of(COMPUTE), CobolParser::parseComputeStatement)
+				.rule("move-statement", TokenSet.of(MOVE), CobolParser::parseMoveStatement)
+				.rule("display-statement", TokenSet.of(DISPLAY), CobolParser::parseDisplayClause)
+				.sync(SCOPE_TERMINATORS.union(DIVISION_HEADERS).with(SEPARATOR_PERIOD))
+				.build());
+		map.context(EXPRESSION_CONTEXT, PredictiveTable.builder("arithmetic-operand")
+				.rule("identifier", TokenSet.of(IDENTIFIER), CobolParser::parseIdentifier)
+				.rule("literal", LITERALS, CobolParser::parsePrimaryExpression)
+				.rule("zero", FIGURATIVE_ZERO, CobolParser::parseZero)
+				.build());
 		return map;
 	}
 
@@ -174,8 +227,15 @@ public class CobolParser extends ParserBase {
 		}
 
 		WorkingStorageSection wsSection = new WorkingStorageSection();
-		DataDescriptionEntry stmt = parseDataDescriptionEntry(reader, registry);
-		wsSection.variableDeclarations().add(stmt);
+		while (!reader.isKindAnyOf(DIVISION_HEADERS) && !reader.isKindAnyOf(SECTION_HEADERS) && !reader.isKind(EOF)) {
+			DataDescriptionEntry stmt = parseDataDescriptionEntry(reader, registry);
+			if (stmt != null) {
+				wsSection.variableDeclarations().add(stmt);
+			} else {    // skip the entry.
+				wsSection.errors().add(recover(reader, ENTRY_SYNC, "Invalid data description entry"));
+				reader.optionalAnyOf(SEPARATOR_PERIOD);
+			}
+		}
 
 		return wsSection;
 	}
@@ -205,19 +265,19 @@ public class CobolParser extends ParserBase {
 		}
 		DataDescriptionEntry variable = new DataDescriptionEntry().dataName(dataName);
 
-		while (reader.token().kind() != SEPARATOR_PERIOD) {
-			Parser parser = registry.get(reader.token().kind());
-			if (parser != null) {
-				AstNode node = parser.parse(reader, registry);
-				if (node instanceof PictureClause picString) {
-					variable.pictureClause(picString);
-				} else if (node instanceof ValueClause value) {
-					variable.valueClause(value);
-				} else {
-					syntaxError(reader, "");
-				}
+		while (!reader.isKind(SEPARATOR_PERIOD) && !reader.isKind(EOF)) {
+			Parser parser = registry.get(DATA_ENTRY_CONTEXT, reader.token());
+			AstNode node = parser != null ? parser.parse(reader, registry) : null;
+			if (node instanceof PictureClause picString) {
+				variable.pictureClause(picString);
+			} else if (node instanceof ValueClause value) {
+				variable.valueClause(value);
+			} else {
+				int start = reader.position();
+				variable.errors().add(recover(reader, registry.context(DATA_ENTRY_CONTEXT).sync(),
+						"Unexpected token in data description entry"));
+				if (reader.position() == start) reader.nextToken();
 			}
-			reader.nextToken();
 		}
 		reader.acceptAnyOf(SEPARATOR_PERIOD);
 
@@ -227,12 +287,12 @@ public class CobolParser extends ParserBase {
 	private static boolean acceptLevelNumber(TokenReader reader) {
 		Token levelNumber = reader.token();
 		if (!levelNumber.kind().equals(NUMBER_LITERAL)
-				|| levelNumber.lexeme().length() != 2) {
+				|| levelNumber.lexemeView().length() != 2) {
 			return false;
 		}
 
 		log.info("levelNumber is " + levelNumber);
-		int n = Integer.parseInt(levelNumber.lexeme());
+		int n = (int) levelNumber.value();
 		if (!isValidLevelNumber(n)) {
 			syntaxError(reader, "Invalid level number: " + n);
 			return false;
@@ -284,8 +344,10 @@ public class CobolParser extends ParserBase {
 	 */
 	public static ProcedureDivision parseProcedureDivision(TokenReader reader, ParserRegistry registry) {
 		// ignore tokens until "PROCEDURE" "DIVISION"
-		while (!reader.isKind(PROCEDURE, DIVISION)) {
+		reader.skipTo(PROCEDURE_HEADER);
+		while (!reader.isKind(EOF) && !reader.isKind(PROCEDURE, DIVISION)) {
 			reader.nextToken();
+			reader.skipTo(PROCEDURE_HEADER);
 		}
 
 		ProcedureDivision division = new ProcedureDivision();
@@ -298,23 +360,35 @@ public class CobolParser extends ParserBase {
 		}
 
 		while (!reader.optionalAnyOf(EOF) && !reader.optionalNextTokens(END, PROGRAM)) {
-			Parser parser = registry.get(reader.token().kind());
-			if (parser != null) {
-				AstNode node = parser.parse(reader, registry);
-				if (node instanceof Statement stmt) {
-					division.statements().add(stmt);
-				} else {
-					syntaxError(reader, "");
-				}
+			if (reader.optionalAnyOf(SEPARATOR_PERIOD)) {
+				continue;       // the end of sentence.
 			}
-			reader.nextToken();
+			if (reader.isKind(IDENTIFIER, SEPARATOR_PERIOD)) {      // paragraph-name "."
+				division.statements().add(new LabeledStatement().label(parseIdentifier(reader, registry)));
+				continue;
+			}
+			int start = reader.position();
+			division.statements().add(parseStatementOrRecover(reader, registry));
+			if (reader.position() == start) reader.nextToken();
 		}
 		return division;
 	}
 
+	/** a statement, or an error node after skipping to the next statement, scope terminator or period. */
+	public static Statement parseStatementOrRecover(TokenReader reader, ParserRegistry registry) {
+		Statement stmt = parseStatement(reader, registry);
+		return stmt != null ? stmt : recover(reader, registry.context(STATEMENT_CONTEXT).sync(), "Unexpected token in statement");
+	}
+
+	/** a statement of the procedure division, null if the token starts none. */
+	public static Statement parseStatement(TokenReader reader, ParserRegistry registry) {
+		Parser parser = registry.get(STATEMENT_CONTEXT, reader.token());
+		return parser != null && parser.parse(reader, registry) instanceof Statement statement ? statement : null;
+	}
+
 	public static UsingClause parseUsingClause(TokenReader reader, ParserRegistry registry) {
 		UsingClause usingClause = new UsingClause();
-		while (reader.token().kind() == IDENTIFIER) {
+		while (reader.isKind(IDENTIFIER)) {
 			usingClause.parameters().add(parseIdentifier(reader, registry));
 		}
 		return usingClause;
@@ -352,12 +426,12 @@ public class CobolParser extends ParserBase {
 		reader.optionalAnyOf(THEN);
 		if (reader.optionalNextTokens(NEXT, SENTENCE)) {
 		} else {
-			ifstmt.thenStatement(parseStatement(reader, registry));
+			ifstmt.thenStatement(parseStatementOrRecover(reader, registry));
 		}
 		if (reader.optionalAnyOf(ELSE)) {
 			if (reader.optionalNextTokens(NEXT, SENTENCE)) {
 			} else {
-				ifstmt.elseStatement(parseStatement(reader, registry));
+				ifstmt.elseStatement(parseStatementOrRecover(reader, registry));
 			}
 		}
 		reader.optionalAnyOf(END_IF);
@@ -388,7 +462,7 @@ public class CobolParser extends ParserBase {
 		if (!reader.optional(STOP)) return null;
 
 		if (reader.optional(RUN)) {
-		} else if (reader.isKindAnyOf(NUMBER_LITERAL, STRING_LITERAL)) {
+		} else if (reader.isKindAnyOf(LITERALS)) {
 			Literal literal = parseLiteral(reader, registry);
 		}
 
@@ -478,10 +552,22 @@ public class CobolParser extends ParserBase {
 	 *	 - 	Multiplication by -1
 	 */
 	public static Expression parseArithmeticExpression(TokenReader reader, ParserRegistry registry) {
-		Token unaryOperator = reader.optionalAnyOfAndReturn(PLUS, MINUS);
+		return operators(registry, ARITHMETIC_OPERATORS).parse(reader, registry, CobolParser::parseArithmeticOperand, 0);
+	}
 
-		AstNode node = parseAny(reader, registry);
-		return new ExpressionBase();
+	/** an identifier, a numeric literal or the figurative constant ZERO. */
+	public static Expression parseArithmeticOperand(TokenReader reader, ParserRegistry registry) {
+		Parser parser = registry.get(EXPRESSION_CONTEXT, reader.token());
+		if (parser != null && parser.parse(reader, registry) instanceof Expression expr) {
+			return expr;
+		}
+		syntaxError(reader, "Unexpected token in arithmetic expression: " + reader.token());
+		return null;
+	}
+
+	public static Literal<String> parseZero(TokenReader reader, ParserRegistry registry) {
+		reader.acceptAnyOf(FIGURATIVE_ZERO);
+		return new Literal<String>().value("0");
 	}
 
 	/** -- conditional expression = (simple condition | combined condition)
@@ -492,16 +578,67 @@ public class CobolParser extends ParserBase {
 	 *      | Sign condition
 	 *      | Switch-status condition
 	 * Combined condition:
-	 *
+	 *        condition { ( "AND" | "OR" ) condition }
+	 *      | abbreviated: the subject or also the operator of the last relation omitted
+	 *                                   IF A > 1 AND < 5 THEN...  IF A = 1 OR 2 THEN...
+	 * A condition after AND or OR is told by lookahead: the subject is omitted if a relational operator follows
+	 * AND or OR, and the operator is omitted too if none follows the operand.
+	 * NOT starts a negated condition unless a relational operator follows it, e.g. A = 1 AND NOT B = 2.
 	 */
 	public static Expression parseConditionalExpression(TokenReader reader, ParserRegistry registry) {
-		Expression leftOperand = parseUnaryExpression(reader, registry);
-		boolean is = reader.optionalAnyOf(IS, ARE);
+		boolean negated = reader.optionalAnyOf(NOT);
+		BinaryExpression relation = parseRelationCondition(reader, registry);
+		Expression condition = negated ? negate(relation) : relation;
+		Token logical;
+		while ((logical = reader.optionalAnyOfAndReturn(AND_OR)) != null) {
+			Expression next;
+			if (startsRelationalOperator(reader)) {
+				next = relation = parseAbbreviatedRelation(reader, registry, relation);
+			} else if (reader.optionalAnyOf(NOT)) {
+				relation = parseRelationCondition(reader, registry);
+				next = negate(relation);
+			} else {
+				Expression operand = parseArithmeticExpression(reader, registry);
+				next = relation = startsRelationalOperator(reader) ? parseRelationRest(reader, registry, operand)
+						: new BinaryExpression().leftOperand(relation.leftOperand()).operator(relation.operator()).rightOperand(operand);
+			}
+			condition = new BinaryExpression().leftOperand(condition).operator(logical.lexeme()).rightOperand(next);
+		}
+		return condition;
+	}
+
+	/** @return true if the current token starts a relational operator, or is NOT followed by one. */
+	protected static boolean startsRelationalOperator(TokenReader reader) {
+		return reader.isKindAnyOf(RELATIONAL_OPERATORS)
+				|| (reader.isKind(NOT) && RELATIONAL_OPERATORS.contains(reader.peekToken(1)));
+	}
+
+	protected static Expression negate(Expression condition) {
+		return new PrefixUnaryExpression().operator("NOT").expression(condition);
+	}
+
+	public static BinaryExpression parseRelationCondition(TokenReader reader, ParserRegistry registry) {
+		return parseRelationRest(reader, registry, parseArithmeticExpression(reader, registry));
+	}
+
+	/** the relational operator and the object of the relation condition after its subject. */
+	protected static BinaryExpression parseRelationRest(TokenReader reader, ParserRegistry registry, Expression leftOperand) {
+		boolean is = reader.optionalAnyOf(IS_ARE);
 		String operator = parserRationalOperator(reader);
-		Expression rightOperand = parseUnaryExpression(reader, registry);
+		Expression rightOperand = parseArithmeticExpression(reader, registry);
 		return new BinaryExpression().leftOperand(leftOperand).rightOperand(rightOperand).operator(operator);
 	}
 
+	/** the relation condition with the omitted subject or operator of the last one. */
+	protected static BinaryExpression parseAbbreviatedRelation(TokenReader reader, ParserRegistry registry,
+	                                                           BinaryExpression last) {
+		reader.optionalAnyOf(IS_ARE);
+		String operator = parserRationalOperator(reader);
+		Expression rightOperand = parseArithmeticExpression(reader, registry);
+		return new BinaryExpression().leftOperand(last.leftOperand())
+				.operator(operator != null ? operator : last.operator()).rightOperand(rightOperand);
+	}
+
 	/**
 	 * Relational-Operators: (IS | ARE)? (
 	 *         NOT? ('GREATER' 'THAN'? | '>' | 'LESS' 'THAN'? | '<' | 'EQUAL' TO'? | '=')
@@ -524,6 +661,12 @@ public class CobolParser extends ParserBase {
 			} else if (reader.optionalAnyOf(EQUAL)) {
 				reader.optionalAnyOf(TO);
 				operator = "<>";    // not equals
+			} else if (reader.optionalAnyOf(GT)) {
+				operator = "<=";
+			} else if (reader.optionalAnyOf(LT)) {
+				operator = ">=";
+			} else {
+				syntaxError(reader, "A relational operator is expected after NOT: " + reader.token());
 			}
 		} else if (reader.optionalAnyOf(GREATER)) {
 			reader.optionalAnyOf(THAN);
@@ -557,7 +700,7 @@ public class CobolParser extends ParserBase {
 	public static Expression parseIdentifierOrLiteral(TokenReader reader, ParserRegistry registry) {
 		if (reader.isKind(IDENTIFIER)) {
 			return parseIdentifier(reader, registry);
-		} else if (reader.isKind(NUMBER_LITERAL, STRING_LITERAL)) {
+		} else if (reader.isKindAnyOf(LITERALS)) {
 			return parseLiteral(reader, registry);
 		}
 		return null; // syntaxError(reader, "Neither IDENTIFIER nor LITERAL");
@@ -0,0 +1,229 @@
+package fc.compiler.language.cobol;
+
+import fc.compiler.common.lexer.CodeReader;
+import fc.compiler.common.lexer.LineMap;
+
+import java.util.Arrays;
+
+import static fc.compiler.common.lexer.Constants.*;
+
+/**
+ * Code reader over fixed-format (card image) COBOL source code.
+ *  Column  1-6   Sequence area         skipped
+ *  Column  7     Indicator area        ' ', '*', '/', 'D' or '-'
+ *  Column  8-11  Area A
+ *  Column 12-72  Area B
+ *  Column 73-80  Identification area   skipped
+ *
+ * Each line is classified in one pass at construction. The areas to be skipped are recorded as gaps
+ * of the buffer, and nextChar() jumps over them, so the buffer is never rewritten or copied.
+ * The lexer sees the indicator as the first character of each line just like free-format source code,
+ * and the positions of tokens are still the real lines and columns in the file.
+ *
+ * A continuation line ('-' in indicator area) is joined to the previous line by one gap:
+ * - if the previous line ends in an open literal, the literal runs through column 72
+ *   and continues after the quotation mark in Area B of the continuation line.
+ * - otherwise, the last nonblank character of the previous line is followed by
+ *   the first nonblank character in Area B of the continuation line.
+ * Trailing spaces which are trimmed from a continued literal are not restored.
+ * @author FC
+ */
+public class FixedFormatCodeReader extends CodeReader {
+	public static final int SEQUENCE_AREA_LENGTH = 6;
+	public static final int INDICATOR_AREA = 6;     // index in line
+	public static final int AREA_A = 7;
+	public static final int TEXT_AREA_END = 72;
+
+	protected int[] gapStarts = new int[64];
+	protected int[] gapEnds = new int[64];
+	protected int gapCount;
+	protected int gap;                      // index of the next gap from bp.
+	protected int nextGap;                  // the start of next gap.
+
+	public FixedFormatCodeReader(char[] code) { this(code, null); }
+	public FixedFormatCodeReader(char[] code, String fileName) {
+		super(code, code.length, fileName);
+		this.lines = new LineMap(fileName, map -> map.scan(this.code, 0, this.limit, 0));
+		classifyLines();
+		nextGap = gapCount > 0 ? gapStarts[0] : Integer.MAX_VALUE;
+
+		nextChar();     // MUST call this to start reading.
+	}
+
+	/** @return true if the line has '-' in its indicator area. */
+	public static boolean isContinuationLine(char[] code, int lineStart) {
+		int indicatorPos = lineStart + INDICATOR_AREA;
+		for (int p = lineStart; p < indicatorPos; p++) {
+			if (p >= code.length || code[p] == CR || code[p] == LF) return false;
+		}
+		return indicatorPos < code.length && code[indicatorPos] == '-';
+	}
+
+	/** Classify the areas of all lines and record the gaps to be skipped. */
+	protected void classifyLines() {
+		int pendingStart = -1, pendingEnd = -1;    // identification area of previous line.
+		boolean joinable = false;                   // the previous line can be continued.
+		boolean openLiteral = false;                // the previous line ends in an open literal.
+		char quote = 0;
+		int lastNonBlank = -1;                      // the last nonblank character of previous line.
+		int previousTextEnd = -1;
+
+		int p = 0;
+		while (p < limit) {
+			int lineStart = p;
+			while (p < limit && code[p] != CR && code[p] != LF) p++;
+			int lineEnd = p;
+			if (p < limit && code[p] == CR) p++;
+			if (p < limit && code[p] == LF) p++;
+
+			int textEnd = Math.min(lineStart + TEXT_AREA_END, lineEnd);
+			int indicatorPos = lineStart + INDICATOR_AREA;
+			char indicator = indicatorPos < lineEnd ? code[indicatorPos] : SPACE;
+			int textStart = Math.min(lineStart + AREA_A, lineEnd);
+
+			if (indicator == '-' && joinable) {
+				int first = textStart;
+				while (first < textEnd && code[first] == SPACE) first++;
+				int joinFrom, joinTo;
+				if (openLiteral) {
+					joinFrom = previousTextEnd;
+					joinTo = first < textEnd && code[first] == quote ? first + 1 : first;
+				} else {
+					joinFrom = lastNonBlank + 1;
+					joinTo = first;
+				}
+				addGap(joinFrom, joinTo);   // replaces the identification area of previous line.
+				textStart = joinTo;
+			} else {
+				addGap(pendingStart, pendingEnd);
+				addGap(lineStart, Math.min(lineStart + SEQUENCE_AREA_LENGTH, lineEnd));
+				openLiteral = false;
+			}
+
+			joinable = indicator != '*' && indicator != '/' && indicator != 'D' && indicator != 'd';
+			lastNonBlank = textStart - 1;
+			if (joinable) {
+				for (int i = textStart; i < textEnd; i++) {
+					char c = code[i];
+					if (openLiteral) {
+						if (c == quote) openLiteral = false;
+					} else if (c == '\'' || c == '"') {
+						openLiteral = true;
+						quote = c;
+					}
+					if (c != SPACE) lastNonBlank = i;
+				}
+			}
+			previousTextEnd = textEnd;
+			pendingStart = textEnd;
+			pendingEnd = lineEnd;
+		}
+		addGap(pendingStart, pendingEnd);
+	}
+
+	protected void addGap(int start, int end) {
+		if (start >= end) return;
+		if (gapCount == gapStarts.length) {
+			gapStarts = Arrays.copyOf(gapStarts, gapCount * 2);
+			gapEnds = Arrays.copyOf(gapEnds, gapCount * 2);
+		}
+		gapStarts[gapCount] = start;
+		gapEnds[gapCount] = end;
+		gapCount++;
+	}
+
+	@Override
+	public char nextChar() {
+		++bp;
+		while (bp >= nextGap) {
+			if (bp < gapEnds[gap]) bp = gapEnds[gap];
+			gap++;
+			nextGap = gap < gapCount ? gapStarts[gap] : Integer.MAX_VALUE;
+		}
+		ch = bp < limit ? code[bp] : EOF;
+		return ch;
+	}
+
+	/** runs are scanned in the buffer up to the next gap. */
+	@Override
+	protected int directLimit() {
+		return Math.min(limit, nextGap);
+	}
+
+	@Override
+	public char peekChar(int n) {
+		int p = bp, g = gap;
+		for (int i = 0; i < n; i++) {
+			++p;
+			while (g < gapCount && p >= gapStarts[g]) {
+				if (p < gapEnds[g]) p = gapEnds[g];
+				g++;
+			}
+		}
+		ch = p < limit ? code[p] : EOF;
+		return ch;
+	}
+
+	/** the gaps before the mark are passed, and the mark is never in a gap. */
+	@Override
+	public void reset(int mark) {
+		gap = Arrays.binarySearch(gapEnds, 0, gapCount, mark);
+		gap = gap >= 0 ? gap + 1 : -gap - 1;
+		nextGap = gap < gapCount ? gapStarts[gap] : Integer.MAX_VALUE;
+		super.reset(mark);
+	}
+
+	/** @return the first gap in the current lexeme, or -1 if none. */
+	protected int firstGapInLexeme() {
+		if (gap == 0 || gapEnds[gap - 1] <= sp) {
+			return -1;
+		}
+		int first = gap - 1;
+		while (first > 0 && gapEnds[first - 1] > sp) first--;
+		return first;
+	}
+
+	@Override
+	public int lexemeLength() {
+		int length = super.lexemeLength();
+		int first = firstGapInLexeme();
+		for (int g = first < 0 ? gap : first; g < gap; g++) {
+			length -= gapEnds[g] - gapStarts[g];
+		}
+		return length;
+	}
+
+	@Override
+	public char lexemeChar(int index) {
+		int p = sp + index;
+		int first = firstGapInLexeme();
+		for (int g = first < 0 ? gap : first; g < gap && p >= gapStarts[g]; g++) {
+			p += gapEnds[g] - gapStarts[g];
+		}
+		return code[p];
+	}
+
+	@Override
+	public CharSequence lexemeView() {
+		return firstGapInLexeme() < 0 ? super.lexemeView() : lexeme();
+	}
+
+	/** the lexeme without the skipped areas if it spans lines. */
+	@Override
+	public String lexeme() {
+		int first = firstGapInLexeme();
+		if (first < 0) {
+			return super.lexeme();
+		}
+
+		int end = Math.min(bp, limit);
+		StringBuilder sb = new StringBuilder(end - sp);
+		int from = sp;
+		for (int i = first; i < gap; i++) {
+			sb.append(code, from, gapStarts[i] - from);
+			from = gapEnds[i];
+		}
+		sb.append(code, from, end - from);
+		return sb.toString();
+	}
+}
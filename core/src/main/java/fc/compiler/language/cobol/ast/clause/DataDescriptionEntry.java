@@ -2,11 +2,15 @@ package fc.compiler.language.cobol.ast.clause;
 
 import fc.compiler.common.ast.StatementBase;
 import fc.compiler.common.ast.expression.Identifier;
+import fc.compiler.common.ast.statement.ErrorStatement;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.Accessors;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author FC
  */
@@ -15,4 +19,5 @@ public class DataDescriptionEntry extends StatementBase {
 	Identifier dataName;
 	PictureClause pictureClause;
 	ValueClause valueClause;
+	List<ErrorStatement> errors = new ArrayList<>();     // the clauses failed to parse.
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package fc.compiler.language.cobol.ast.division;
 
 import fc.compiler.common.ast.StatementBase;
+import fc.compiler.common.ast.statement.ErrorStatement;
 import fc.compiler.language.cobol.ast.clause.DataDescriptionEntry;
 import lombok.Getter;
 import lombok.Setter;
@@ -16,4 +17,5 @@ import java.util.List;
 @Getter @Setter @Accessors(fluent = true) @ToString
 public class WorkingStorageSection extends StatementBase {
 	List<DataDescriptionEntry> variableDeclarations = new ArrayList<>();
+	List<ErrorStatement> errors = new ArrayList<>();     // the entries failed to parse.
 }
\ No newline at end of file
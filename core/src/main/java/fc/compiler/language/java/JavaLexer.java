@@ -1,20 +1,157 @@
 package fc.compiler.language.java;
 
+import fc.compiler.common.lexer.CharClass;
 import fc.compiler.common.lexer.CodeReader;
+import fc.compiler.common.lexer.DfaLexer;
+import fc.compiler.common.lexer.KeywordMatcher;
 import fc.compiler.common.lexer.LexerBase;
 import fc.compiler.common.lexer.LexerMapper;
+import fc.compiler.common.lexer.TokenPattern;
+import fc.compiler.common.lexer.TokenRules;
 import fc.compiler.common.token.Token;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static fc.compiler.common.lexer.Constants.EOF;
 import static fc.compiler.common.lexer.Constants.*;
-import static fc.compiler.common.token.TokenKind.*;
+import static fc.compiler.language.java.JavaTokenKind.*;
 
 /**
  * @author FC
  */
 public class JavaLexer extends LexerBase {
-	public JavaLexer() {
+	// EOF is an identifier-ignorable character in Java, but it must end an identifier.
+	public static final CharClass IDENTIFIER_START = CharClass.bmp(Character::isJavaIdentifierStart);
+	public static final CharClass IDENTIFIER_PART = CharClass.bmp(c -> c != EOF && Character.isJavaIdentifierPart(c));
+	/** from the text of keyword to its token kind, e.g. "class" to CLASS. */
+	public static final Map<String, String> KEYWORDS = new LinkedHashMap<>();
+	static {
+		for (String kind : RESERVED_KEYWORDS) {
+			KEYWORDS.put(kind.toLowerCase(), kind);
+		}
+	}
+	private static final KeywordMatcher KEYWORD_MATCHER = new KeywordMatcher(KEYWORDS);
+
+	private static DfaLexer dfaLexer;
+
+	public JavaLexer() { this(false); }
+	/** @param useDfa scan by the compiled token rules before the lexer mapper. */
+	public JavaLexer(boolean useDfa) {
 		this.mapper = initLexerMapper();
+		if (useDfa) {
+			this.dfa = dfaLexer();
+		}
+	}
+
+	/**
+	 * The same lexers as the mapper by a switch if switchDispatch is set,
+	 * so that each case is a direct call which the JIT can inline. Keep it in sync with initLexerMapper();
+	 * a test scans every ASCII character both ways.
+	 */
+	@Override
+	protected Token dispatch(CodeReader reader) {
+		if (!switchDispatch) {
+			return super.dispatch(reader);
+		}
+		char ch = reader.ch;
+		switch (ch) {
+			case SPACE: case TAB: case FF: return scanWhiteSpaces(reader);
+			case LF: case CR: return scanLineTerminator(reader);
+			case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9':
+				return scanNumber(reader);
+			case '.': return scanDot(reader);
+			case ',': return scanComma(reader);
+			case ';': return scanSemicolon(reader);
+			case ':': return scanColon(reader);
+			case '(': return scanLeftParen(reader);
+			case ')': return scanRightParen(reader);
+			case '[': return scanLeftBracket(reader);
+			case ']': return scanRightBracket(reader);
+			case '{': return scanLeftBrace(reader);
+			case '}': return scanRightBrace(reader);
+			case '?': return scanQuestion(reader);
+			case '@': return scanAt(reader);
+			case '+': return scanPlus(reader);
+			case '-': return scanMinus(reader);
+			case '*': return scanStar(reader);
+			case '/': return scanSlash(reader);
+			case '&': return scanAmpersand(reader);
+			case '|': return scanBar(reader);
+			case '=': return scanEqual(reader);
+			case '>': return scanGT(reader);
+			case '<': return scanLT(reader);
+			case '!': return scanExclamationMark(reader);
+			case '%': return scanPercent(reader);
+			case '~': return scanTilde(reader);
+			case '^': return scanCaret(reader);
+			case '\'': return scanSingleQuote(reader);
+			case '\"': return scanDoubleQuote(reader);
+			case EOF: return scanEOF(reader);
+			default:
+				if (('a' <= ch && ch <= 'z') || ('A' <= ch && ch <= 'Z') || ch == '$' || ch == '_') {
+					return scanIdentifier(reader);
+				}
+				return super.dispatch(reader);
+		}
+	}
+
+	public static synchronized DfaLexer dfaLexer() {
+		if (dfaLexer == null) {
+			dfaLexer = initTokenRules().compile();
+		}
+		return dfaLexer;
+	}
+
+	/**
+	 * The same tokens as the lexer mapper. Line terminators, quotes and comments are left to the mapper.
+	 */
+	public static TokenRules initTokenRules() {
+		TokenPattern dot = TokenPattern.of('.');
+		return new TokenRules()
+				.rule(WHITE_SPACES, TokenPattern.of(CharClass.WHITESPACE).some())
+				.keywords(KEYWORDS, false)
+				.rule(IDENTIFIER, TokenPattern.of(CharClass.LETTER.or('$', '_'))
+						.then(TokenPattern.of(IDENTIFIER_PART).many()))
+
+				.rule(NUMBER_LITERAL, number(TokenPattern.of(CharClass.range('1', '9')), CharClass.DEC_DIGIT),
+						token -> token.number(10))
+				.rule(NUMBER_LITERAL, number(TokenPattern.text("0"), CharClass.OCT_DIGIT), JavaLexer::octalNumber)
+				.rule(NUMBER_LITERAL, number(TokenPattern.text("0").then(TokenPattern.of('x', 'X')), CharClass.HEX_DIGIT),
+						token -> token.number(16))
+				.rule(NUMBER_LITERAL, number(TokenPattern.text("0b"), CharClass.of('0', '1')), token -> token.number(2))
+				.rule(NUMBER_LITERAL, dot.then(TokenPattern.of(CharClass.DEC_DIGIT).some()), token -> token.number(10))
+
+				.literal("...", ELLIPSIS)
+				.rule(TokenPattern.text(".."), JavaLexer::scanDot)
+				.literal(".", DOT)
+				.literal(",", COMMA).literal(";", SEMICOLON).literal(":", COLON)
+				.literal("(", LEFT_PAREN).literal(")", RIGHT_PAREN)
+				.literal("[", LEFT_BRACKET).literal("]", RIGHT_BRACKET)
+				.literal("{", LEFT_BRACE).literal("}", RIGHT_BRACE)
+				.literal("?", QUESTION).literal("@", AT)
+
+				.literal("+", PLUS).literal("++", PLUS_PLUS).literal("+=", PLUS_EQUAL)
+				.literal("-", MINUS).literal("--", MINUS_MINUS).literal("-=", MINUS_EQUAL)
+				.literal("&", AMPERSAND).literal("&&", AMPERSAND_AMPERSAND).literal("&=", AMPERSAND_EQUAL)
+				.literal("|", BAR).literal("||", BAR_BAR).literal("|=", BAR_EQUAL)
+				.literal("*", STAR).literal("*=", STAR_EQUAL)
+				.literal("=", EQUAL).literal("==", EQUAL_EQUAL)
+				.literal("%", PERCENT).literal("%=", PERCENT_EQUAL)
+				.literal("~", TILDE).literal("~=", TILDE_EQUAL)
+				.literal("^", CARET).literal("^=", CARET_EQUAL)
+				.literal("!", EXCLAMATION_MARK).literal("!=", EXCLAMATION_MARK_EQUAL)
+				.literal(">", GT).literal(">>", GT_GT).literal(">=", GT_EQUAL).literal(">>=", GT_GT_EQUAL)
+				.literal("<", LT).literal("<<", LT_LT).literal("<=", LT_EQUAL).literal("<<=", LT_LT_EQUAL)
+				.literal("/", SLASH).literal("/=", SLASH_EQUAL)
+				.rule(TokenPattern.text("//"), JavaLexer::scanSlash)
+				.rule(TokenPattern.text("/*"), JavaLexer::scanSlash);
+	}
+
+	/** integral part and optional fraction part. */
+	private static TokenPattern number(TokenPattern prefix, CharClass digits) {
+		TokenPattern digitsPattern = TokenPattern.of(digits).many();
+		return prefix.then(digitsPattern).then(TokenPattern.of('.').then(digitsPattern).optional());
 	}
 
 	public LexerMapper initLexerMapper() {
@@ -27,17 +164,18 @@ public class JavaLexer extends LexerBase {
 		mapper.mapLexer(LF,     LexerBase::scanLineTerminator);
 		mapper.mapLexer(CR,     LexerBase::scanLineTerminator);
 
-		for (char c = 'a'; c < 'z'; c++) {
+		for (char c = 'a'; c <= 'z'; c++) {
 			mapper.mapLexer(c,     JavaLexer::scanIdentifier);
 		}
-		for (char c = 'A'; c < 'Z'; c++) {
+		for (char c = 'A'; c <= 'Z'; c++) {
 			mapper.mapLexer(c,     JavaLexer::scanIdentifier);
 		}
 		mapper.mapLexer('$',     JavaLexer::scanIdentifier);
 		mapper.mapLexer('_',     JavaLexer::scanIdentifier);
+		mapper.mapLexer(IDENTIFIER_START, JavaLexer::scanIdentifier);   // unicode letters.
 
 		mapper.mapLexer('0', JavaLexer::scanNumber);
-		for (char c = '1'; c < '9'; c++) {
+		for (char c = '1'; c <= '9'; c++) {
 			mapper.mapLexer(c,     JavaLexer::scanNumber);
 		}
 
@@ -81,17 +219,18 @@ public class JavaLexer extends LexerBase {
 	}
 
 	public static Token scanIdentifier(CodeReader reader) {
-		if (!Character.isJavaIdentifierStart(reader.ch))
+		if (!reader.accept(IDENTIFIER_START))
 			return null;
 
-		reader.nextChar();
+		reader.skipWhile(IDENTIFIER_PART);
 
-		while (Character.isJavaIdentifierPart(reader.ch)) {
-			reader.nextChar();
+		// keywords are case-sensitive in Java.
+		int slot = KEYWORD_MATCHER.find(reader);
+		if (slot >= 0 && KEYWORD_MATCHER.isExact(reader, slot)) {
+			return new Token(KEYWORD_MATCHER.kind(slot), reader).lexeme(KEYWORD_MATCHER.text(slot));
 		}
-
-		return new Token(IDENTIFIER, reader.position)
-				.lexeme(reader.lexeme());
+		return new Token(IDENTIFIER, reader)
+				.lexeme(reader.lexemeView());
 	}
 
 	public static Token scanNumber(CodeReader reader) {
@@ -120,7 +259,7 @@ public class JavaLexer extends LexerBase {
 			for (; '0' <= reader.ch && reader.ch <= '9'; reader.nextChar()) {}
 		}
 
-		return new Token(NUMBER_LITERAL, reader.position).lexeme(reader.lexeme());
+		return new Token(NUMBER_LITERAL, reader).lexeme(reader.lexemeView()).number(10);
 	}
 
 	public static Token scanHexNumberLiteral(CodeReader reader) {
@@ -132,7 +271,7 @@ public class JavaLexer extends LexerBase {
 			for (; reader.isHexDigit(); reader.nextChar()) {}
 		}
 
-		return new Token(NUMBER_LITERAL, reader.position).lexeme(reader.lexeme()).radix(16);
+		return new Token(NUMBER_LITERAL, reader).lexeme(reader.lexemeView()).number(16);
 	}
 
 	public static Token scanOctNumberLiteral(CodeReader reader) {
@@ -144,7 +283,16 @@ public class JavaLexer extends LexerBase {
 			for (; reader.isOctDigit(); reader.nextChar()) {}
 		}
 
-		return new Token(NUMBER_LITERAL, reader.position).lexeme(reader.lexeme()).radix(8);
+		return octalNumber(new Token(NUMBER_LITERAL, reader).lexeme(reader.lexemeView()));
+	}
+
+	/** a number with leading 0 is octal unless it has a fraction, e.g. 0.5. */
+	static Token octalNumber(Token token) {
+		CharSequence s = token.lexemeView();
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '.') return token.number(10);
+		}
+		return token.number(8);
 	}
 
 	public static Token scanBinaryNumberLiteral(CodeReader reader) {
@@ -156,18 +304,18 @@ public class JavaLexer extends LexerBase {
 			for (; reader.ch == '0' || reader.ch == '1'; reader.nextChar()) {}
 		}
 
-		return new Token(NUMBER_LITERAL, reader.position).lexeme(reader.lexeme()).radix(2);
+		return new Token(NUMBER_LITERAL, reader).lexeme(reader.lexemeView()).number(2);
 	}
 
 	public static Token scanFractionAndSuffix(CodeReader reader) {
 		for (; '0' <= reader.ch && reader.ch <= '9'; reader.nextChar()) {}
-		return new Token(NUMBER_LITERAL, reader.position).lexeme(reader.lexeme());
+		return new Token(NUMBER_LITERAL, reader).lexeme(reader.lexemeView()).number(10);
 	}
 
 
 	public static Token scanDot(CodeReader reader) {
 		if (reader.accept("...")) {
-			return new Token(ELLIPSIS, reader.position).lexeme("...");
+			return new Token(ELLIPSIS, reader).lexeme("...");
 		} else {
 			reader.nextChar();
 			if (reader.accept('.')) {   // no double dots.
@@ -175,7 +323,7 @@ public class JavaLexer extends LexerBase {
 			} else if ('0' <= reader.ch && reader.ch <= '9') {
 				return scanFractionAndSuffix(reader);
 			} else {
-				return new Token(DOT, reader.position).lexeme(".");
+				return new Token(DOT, reader).lexeme(".");
 			}
 		}
 		return null;
@@ -201,11 +349,11 @@ public class JavaLexer extends LexerBase {
 	                                                       String doubleKind, String compoundKind, String simpleKind) {
 		reader.accept(operator);
 		if (reader.accept(operator)) {
-			return new Token(doubleKind,    reader.position).lexeme(reader.lexeme());
+			return new Token(doubleKind,    reader).lexeme(reader.lexemeView());
 		} else if (reader.accept('=')) {
-			return new Token(compoundKind,  reader.position).lexeme(reader.lexeme());
+			return new Token(compoundKind,  reader).lexeme(reader.lexemeView());
 		} else {
-			return new Token(simpleKind,    reader.position).lexeme(reader.lexeme());
+			return new Token(simpleKind,    reader).lexeme(reader.lexemeView());
 		}
 	}
 
@@ -241,9 +389,9 @@ public class JavaLexer extends LexerBase {
 
 	public static Token scanEqualCompoundOperator(CodeReader reader, String compoundKind, String simpleKind) {
 		if (reader.accept('=')) {
-			return new Token(compoundKind, reader.position).lexeme(reader.lexeme());
+			return new Token(compoundKind, reader).lexeme(reader.lexemeView());
 		} else {
-			return new Token(simpleKind, reader.position).lexeme(reader.lexeme());
+			return new Token(simpleKind, reader).lexeme(reader.lexemeView());
 		}
 	}
 
@@ -261,15 +409,31 @@ public class JavaLexer extends LexerBase {
 		reader.accept(operator);
 		if (reader.accept(operator)) {
 			if (reader.accept('=')) {
-				return new Token(doubleCompoundKind, reader.position).lexeme(reader.lexeme());
+				return new Token(doubleCompoundKind, reader).lexeme(reader.lexemeView());
 			} else {
-				return new Token(doubleKind, reader.position).lexeme(reader.lexeme());
+				return new Token(doubleKind, reader).lexeme(reader.lexemeView());
 			}
 		} else if (reader.accept('=')) {
-			return new Token(compoundKind,  reader.position).lexeme(reader.lexeme());
+			return new Token(compoundKind,  reader).lexeme(reader.lexemeView());
 		} else {
-			return new Token(simpleKind,    reader.position).lexeme(reader.lexeme());
+			return new Token(simpleKind,    reader).lexeme(reader.lexemeView());
+		}
+	}
+
+	/** also line comments. */
+	@Override
+	protected String skipTriviaToken(CodeReader reader) {
+		if (reader.ch == '/') {
+			int mark = reader.mark();
+			reader.nextChar();
+			if (reader.ch == '/') {
+				reader.skipToEndOfLine();
+				return LINE_COMMENT;
+			}
+			reader.reset(mark);
+			return null;
 		}
+		return super.skipTriviaToken(reader);
 	}
 
 	public static Token scanSlash(CodeReader reader) {
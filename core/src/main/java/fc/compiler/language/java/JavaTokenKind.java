@@ -0,0 +1,75 @@
+package fc.compiler.language.java;
+
+import fc.compiler.common.token.TokenKind;
+
+import java.util.List;
+
+/**
+ * The token kinds of Java keywords. The text of a keyword is its token kind in lower case.
+ * @author FC
+ */
+public interface JavaTokenKind extends TokenKind {
+	// -- reserved keywords, IF and FOR are in TokenKind --
+	public static final String ABSTRACT = "ABSTRACT";
+	public static final String ASSERT = "ASSERT";
+	public static final String BOOLEAN = "BOOLEAN";
+	public static final String BREAK = "BREAK";
+	public static final String BYTE = "BYTE";
+	public static final String CASE = "CASE";
+	public static final String CATCH = "CATCH";
+	public static final String CHAR = "CHAR";
+	public static final String CLASS = "CLASS";
+	public static final String CONST = "CONST";
+	public static final String CONTINUE = "CONTINUE";
+	public static final String DEFAULT = "DEFAULT";
+	public static final String DO = "DO";
+	public static final String DOUBLE = "DOUBLE";
+	public static final String ELSE = "ELSE";
+	public static final String ENUM = "ENUM";
+	public static final String EXTENDS = "EXTENDS";
+	public static final String FINAL = "FINAL";
+	public static final String FINALLY = "FINALLY";
+	public static final String FLOAT = "FLOAT";
+	public static final String GOTO = "GOTO";
+	public static final String IMPLEMENTS = "IMPLEMENTS";
+	public static final String IMPORT = "IMPORT";
+	public static final String INSTANCEOF = "INSTANCEOF";
+	public static final String INT = "INT";
+	public static final String INTERFACE = "INTERFACE";
+	public static final String LONG = "LONG";
+	public static final String NATIVE = "NATIVE";
+	public static final String NEW = "NEW";
+	public static final String PACKAGE = "PACKAGE";
+	public static final String PRIVATE = "PRIVATE";
+	public static final String PROTECTED = "PROTECTED";
+	public static final String PUBLIC = "PUBLIC";
+	public static final String RETURN = "RETURN";
+	public static final String SHORT = "SHORT";
+	public static final String STATIC = "STATIC";
+	public static final String STRICTFP = "STRICTFP";
+	public static final String SUPER = "SUPER";
+	public static final String SWITCH = "SWITCH";
+	public static final String SYNCHRONIZED = "SYNCHRONIZED";
+	public static final String THIS = "THIS";
+	public static final String THROW = "THROW";
+	public static final String THROWS = "THROWS";
+	public static final String TRANSIENT = "TRANSIENT";
+	public static final String TRY = "TRY";
+	public static final String VOID = "VOID";
+	public static final String VOLATILE = "VOLATILE";
+	public static final String WHILE = "WHILE";
+
+	// -- literals reserved as keywords --
+	public static final String TRUE = "TRUE";
+	public static final String FALSE = "FALSE";
+	public static final String NULL = "NULL";
+
+	public static final List<String> RESERVED_KEYWORDS = List.of(
+			ABSTRACT, ASSERT, BOOLEAN, BREAK, BYTE, CASE, CATCH, CHAR,
+			CLASS, CONST, CONTINUE, DEFAULT, DO, DOUBLE, ELSE, ENUM,
+			EXTENDS, FINAL, FINALLY, FLOAT, FOR, GOTO, IF, IMPLEMENTS,
+			IMPORT, INSTANCEOF, INT, INTERFACE, LONG, NATIVE, NEW, PACKAGE,
+			PRIVATE, PROTECTED, PUBLIC, RETURN, SHORT, STATIC, STRICTFP, SUPER,
+			SWITCH, SYNCHRONIZED, THIS, THROW, THROWS, TRANSIENT, TRY, VOID,
+			VOLATILE, WHILE, TRUE, FALSE, NULL);
+}
@@ -0,0 +1,157 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenKind;
+import fc.compiler.language.cobol.CobolLexer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author FC
+ */
+public class CodeReaderTest {
+	static final String COBOL_CODE = " IDENTIFICATION DIVISION.\n"
+			+ " PROGRAM-ID. SAMPLE.\n"
+			+ " DATA DIVISION.\n"
+			+ " WORKING-STORAGE SECTION.\n"
+			+ " 01 INPUT-NUM     PIC S9(4) VALUE ZERO.\n"
+			+ " 01 BIRTH-DAY.\n"
+			+ "     05 YYYY      PIC 9(4).\n"
+			+ "     05 MM        PIC 99.\n"
+			+ " PROCEDURE DIVISION.\n"
+			+ "     DISPLAY \"hello, COBOL!\".\n";
+
+	static List<String> readerToTokens(CodeReader reader, Lexer lexer) {
+		List<String> tokenList = new ArrayList<>();
+		Token t = null;
+		do {
+			t = lexer.scan(reader);
+			tokenList.add(String.valueOf(t));
+		} while (t != null && t.kind() != TokenKind.EOF);
+		return tokenList;
+	}
+
+	protected Path writeTempFile(String code) throws IOException {
+		Path path = Files.createTempFile("fc-compiler", ".cbl");
+		path.toFile().deleteOnExit();
+		Files.writeString(path, code, StandardCharsets.UTF_8);
+		return path;
+	}
+
+	@Test
+	void mappedCodeReader() throws IOException {
+		Path path = writeTempFile(COBOL_CODE);
+		List<String> expected = readerToTokens(new CodeReader(COBOL_CODE.toCharArray(), path.toString()), new CobolLexer());
+
+		CodeReader reader = new MappedCodeReader(path, StandardCharsets.UTF_8, 4);
+		Assertions.assertEquals(expected, readerToTokens(reader, new CobolLexer()));
+	}
+
+	@Test
+	void streamingCodeReader() {
+		List<String> expected = readerToTokens(new CodeReader(COBOL_CODE.toCharArray()), new CobolLexer());
+
+		CodeReader reader = new StreamingCodeReader(new StringReader(COBOL_CODE), null, 4);
+		Assertions.assertEquals(expected, readerToTokens(reader, new CobolLexer()));
+
+		reader = new StreamingCodeReader(Channels.newChannel(
+				new ByteArrayInputStream(COBOL_CODE.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8, null);
+		Assertions.assertEquals(expected, readerToTokens(reader, new CobolLexer()));
+	}
+
+	@Test
+	void peekCharAcrossRefill() {
+		CodeReader reader = new StreamingCodeReader(new StringReader("0123456789"), null, 2);
+		reader.sp = reader.bp;
+		Assertions.assertEquals('7', reader.peekChar(7));
+		Assertions.assertEquals(Constants.EOF, reader.peekChar(10));
+		Assertions.assertEquals('1', reader.nextChar());
+		Assertions.assertEquals("0", reader.lexeme());
+	}
+
+	protected String readAll(CodeReader reader) {
+		StringBuilder sb = new StringBuilder();
+		for (; reader.ch != Constants.EOF; reader.nextChar()) {
+			sb.append(reader.ch);
+			reader.sp = reader.bp;
+		}
+		return sb.toString();
+	}
+
+	@Test
+	void ebcdicCodeReader() {
+		Charset cp037 = Charset.forName("Cp037");
+		byte[] bytes = COBOL_CODE.getBytes(cp037);
+		CodeReader reader = new EbcdicCodeReader(Channels.newChannel(new ByteArrayInputStream(bytes)), cp037, null, 4);
+		Assertions.assertEquals(COBOL_CODE, readAll(reader));
+
+		// national literal N"..." with shift-out/shift-in in Cp930.
+		Charset cp930 = Charset.forName("x-IBM930");
+		bytes = new byte[] { (byte) 0xD5, 0x7F, 0x0E, 0x40, 0x40, 0x45, 0x41, 0x0F, 0x7F, 0x25, (byte) 0xC1 };
+		reader = new EbcdicCodeReader(Channels.newChannel(new ByteArrayInputStream(bytes)), cp930, null, 3);
+		Assertions.assertEquals(new String(bytes, cp930), readAll(reader));
+	}
+
+	@Test
+	void asciiCodeReader() {
+		List<String> expected = readerToTokens(new CodeReader(COBOL_CODE.toCharArray()), new CobolLexer());
+
+		ByteBuffer bytes = ByteBuffer.wrap(COBOL_CODE.getBytes(StandardCharsets.UTF_8));
+		CodeReader reader = AsciiCodeReader.of(bytes, StandardCharsets.UTF_8, null);
+		Assertions.assertInstanceOf(AsciiCodeReader.class, reader);
+		Assertions.assertEquals(expected, readerToTokens(reader, new CobolLexer()));
+
+		String national = " DISPLAY \"\u5168\u89d2\".\n";
+		reader = AsciiCodeReader.of(ByteBuffer.wrap(national.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, null);
+		Assertions.assertFalse(reader instanceof AsciiCodeReader);
+		Assertions.assertEquals(national, readAll(reader));
+	}
+
+	@Test
+	void lineMap() {
+		CodeReader reader = new CodeReader("a\r\nbc\rd\n\ne".toCharArray(), "f");
+		LineMap lines = reader.lines;
+		Assertions.assertEquals(5, lines.lineCount());
+		Assertions.assertEquals("(1, 1)@f", lines.position(0).toString());
+		Assertions.assertEquals("(2, 2)@f", lines.position(4).toString());
+		Assertions.assertEquals("(3, 1)@f", lines.position(6).toString());
+		Assertions.assertEquals("(5, 1)@f", lines.position(9).toString());
+	}
+
+	@Test
+	void runScanner() {
+		String text = "          \t  x    \"abc def\\\"\r\n       ;";
+		ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)).order(ByteOrder.LITTLE_ENDIAN);
+		char[] chars = text.toCharArray();
+		RunScanner scalar = new RunScanner(), swar = new SwarRunScanner(), selected = RunScanner.get();
+		// the vector backend is selected whenever its module is present, as in these tests.
+		Assertions.assertEquals(ModuleLayer.boot().findModule(RunScanner.VECTOR_MODULE).isPresent(),
+				selected.getClass().getSimpleName().equals("VectorRunScanner"));
+		for (int from = 0; from <= text.length(); from++) {
+			int expected = scalar.skipWhitespace(chars, from, chars.length);
+			Assertions.assertEquals(expected, scalar.skipWhitespace(bytes, from, chars.length));
+			Assertions.assertEquals(expected, swar.skipWhitespace(bytes, from, chars.length));
+			Assertions.assertEquals(expected, swar.skipWhitespace(chars, from, chars.length));
+			Assertions.assertEquals(expected, selected.skipWhitespace(chars, from, chars.length));
+
+			expected = scalar.indexOfAny(chars, from, chars.length, '"', '\\', Constants.CR, Constants.LF);
+			Assertions.assertEquals(expected, swar.indexOfAny(bytes, from, chars.length, '"', '\\', Constants.CR, Constants.LF));
+			Assertions.assertEquals(expected, swar.indexOfAny(chars, from, chars.length, '"', '\\', Constants.CR, Constants.LF));
+			Assertions.assertEquals(expected, selected.indexOfAny(chars, from, chars.length, '"', '\\', Constants.CR, Constants.LF));
+		}
+		Assertions.assertEquals(text.length(), swar.indexOfAny(bytes, 0, text.length(), '@', '@', '@', '\u00e9'));
+	}
+}
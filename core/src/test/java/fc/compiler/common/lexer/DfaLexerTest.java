@@ -0,0 +1,85 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.language.cobol.CobolCompilerOptions;
+import fc.compiler.language.cobol.CobolLexer;
+import fc.compiler.language.cobol.FixedFormatCodeReader;
+import fc.compiler.language.java.JavaLexer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static fc.compiler.common.lexer.CodeReaderTest.COBOL_CODE;
+import static fc.compiler.common.lexer.CodeReaderTest.readerToTokens;
+
+/**
+ * The DFA lexers must scan the same tokens as the lexer mappers.
+ * @author FC
+ */
+public class DfaLexerTest {
+	static final String JAVA_CODE = "package a.b;\n"
+			+ "public class Sample<T> {\n"
+			+ "\tint[] values = { 0, 017, 0x1F, 0XcafE, 0b101, 0.5, .25, 1.5, 1., 09, 0b2 };\n"
+			+ "\tvoid f(String... args) { x += y++ - --z * (a >>= 2) / b; }\n"
+			+ "\tboolean g() { return a && b || !c & d | e ^ f % g != h == i <= j << k <<= l >= m >> n ~ o ?x:y; }\n"
+			+ "\tString s = \"hello\"; char c = 'c'; // comment\n"
+			+ "\t@Override $_z9 Zz = a..b ...;\r\n"
+			+ "}\n";
+
+	static final String COBOL_MORE = " identification division.\n"
+			+ " 01 COMP-1-VALUE PIC 9(4)V99 COMP-3.\n"
+			+ "     IF A >= 12.5 AND B <= 3 AND C <> D AND E = F AND G > H AND I < J\n"
+			+ "        MOVE 12AB TO X-Y(1:2) MOVE 1- TO WORKING-STORAGE & BAD- == BAD_\n"
+			+ "     Display 'single' \"double\"\n"
+			+ "*> comment\n"
+			+ " program-idx program-id. end\n";
+
+	@Test
+	void javaLexer() {
+		List<String> expected = readerToTokens(new CodeReader(JAVA_CODE.toCharArray()), new JavaLexer());
+		List<String> actual = readerToTokens(new CodeReader(JAVA_CODE.toCharArray()), new JavaLexer(true));
+		Assertions.assertEquals(expected, actual);
+	}
+
+	@Test
+	void cobolLexer() {
+		CobolCompilerOptions options = new CobolCompilerOptions();
+		options.dfaLexer = true;
+		for (String code : new String[] { COBOL_CODE, COBOL_MORE }) {
+			List<String> expected = readerToTokens(new CodeReader(code.toCharArray()), new CobolLexer());
+			List<String> actual = readerToTokens(new CodeReader(code.toCharArray()), new CobolLexer(options));
+			Assertions.assertEquals(expected, actual);
+		}
+
+		String card = "000100 IDENTIFICATION DIVISION.                                          SAMPLE01\n"
+				+ "000200 PROCEDURE DIVISION.                                               SAMPLE01\n"
+				+ "000300     DISPLAY WORKING-                                              SAMPLE01\n"
+				+ "000400-    STORAGE >                                                     SAMPLE01\n"
+				+ "000500-    = 1.                                                          SAMPLE01\n";
+		List<String> expected = readerToTokens(new FixedFormatCodeReader(card.toCharArray()), new CobolLexer());
+		List<String> actual = readerToTokens(new FixedFormatCodeReader(card.toCharArray()), new CobolLexer(options));
+		Assertions.assertEquals(expected, actual);
+	}
+
+	@Test
+	void nationalIdentifier() {
+		CobolCompilerOptions options = new CobolCompilerOptions();
+		options.dfaLexer = true;
+		String code = " MOVE ABC顧客 TO X. MOVE 顧客-名 TO Y-ｶﾅ. DISPLAY ひらがな カタカナ 顧客（１） Ａ＝Ｂ.\n";
+		List<String> expected = readerToTokens(new CodeReader(code.toCharArray()), new CobolLexer());
+		List<String> actual = readerToTokens(new CodeReader(code.toCharArray()), new CobolLexer(options));
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertTrue(actual.stream().anyMatch(token -> token.contains("ABC顧客")), actual::toString);
+	}
+
+	@Test
+	void streamingReader() {
+		CobolCompilerOptions options = new CobolCompilerOptions();
+		options.dfaLexer = true;
+		List<String> expected = readerToTokens(new CodeReader(COBOL_MORE.toCharArray()), new CobolLexer());
+		List<String> actual = readerToTokens(
+				new StreamingCodeReader(new StringReader(COBOL_MORE), null, 4), new CobolLexer(options));
+		Assertions.assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,93 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.common.token.TokenBuffer;
+import fc.compiler.language.cobol.CobolLexer;
+import fc.compiler.language.java.JavaLexer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static fc.compiler.common.lexer.DfaLexerTest.COBOL_MORE;
+import static fc.compiler.common.lexer.DfaLexerTest.JAVA_CODE;
+
+/**
+ * The tokens after edits must be the same as scanning the edited code again.
+ * @author FC
+ */
+public class IncrementalLexerTest {
+	static List<String> toList(TokenBuffer tokens) {
+		List<String> list = new ArrayList<>();
+		for (int i = 0; i < tokens.size(); i++) {
+			list.add(tokens.kind(i) + "@" + tokens.offset(i) + " '" + tokens.lexeme(i) + "' " + tokens.position(i));
+		}
+		return list;
+	}
+
+	/** apply the edit to code, and compare the tokens with the ones scanned again. @return the edited code. */
+	static String edit(IncrementalLexer lexer, Supplier<LexerBase> newLexer, String code, int offset, int removed, String inserted) {
+		String edited = code.substring(0, offset) + inserted + code.substring(offset + removed);
+		TokenBuffer tokens = lexer.edit(new CodeReader(edited.toCharArray()), offset, removed, inserted);
+		TokenBuffer expected = new IncrementalLexer(newLexer.get()).lex(new CodeReader(edited.toCharArray()));
+		Assertions.assertEquals(toList(expected), toList(tokens), () -> "edit at " + offset);
+		LineMap lines = new CodeReader(edited.toCharArray()).lines;
+		Assertions.assertEquals(lines.lineCount(), lexer.lines.lineCount(), () -> "edit at " + offset);
+		for (int line = 1; line <= lines.lineCount(); line++) {
+			Assertions.assertEquals(lines.lineStart(line), lexer.lines.lineStart(line));
+		}
+		return edited;
+	}
+
+	@Test
+	void cobolLexer() {
+		String code = COBOL_MORE.repeat(200);
+		IncrementalLexer lexer = new IncrementalLexer(new CobolLexer());
+		lexer.lex(new CodeReader(code.toCharArray()));
+
+		int middle = COBOL_MORE.length() * 100;
+		code = edit(lexer, CobolLexer::new, code, middle + 10, 0, "X");
+		Assertions.assertTrue(lexer.relexed() < 20);
+		code = edit(lexer, CobolLexer::new, code, middle + 10, 1, "");
+		code = edit(lexer, CobolLexer::new, code, middle + 1, 0, "\n*");     // a new comment line.
+		code = edit(lexer, CobolLexer::new, code, middle, 0, "*");          // the line is commented out.
+		code = edit(lexer, CobolLexer::new, code, middle, 1, "");
+		code = edit(lexer, CobolLexer::new, code, middle + 30, 40, " 'a\nb' ");
+		code = edit(lexer, CobolLexer::new, code, 0, 5, "");
+		code = edit(lexer, CobolLexer::new, code, code.length() - 3, 3, "  END\n");
+		edit(lexer, CobolLexer::new, code, 0, code.length(), " DISPLAY X.");
+	}
+
+	@Test
+	void removeLine() {
+		String code = " MOVE A TO B.\n DISPLAY X.\n STOP RUN.\n";
+		IncrementalLexer lexer = new IncrementalLexer(new CobolLexer());
+		lexer.lex(new CodeReader(code.toCharArray()));
+		edit(lexer, CobolLexer::new, code, 0, 14, "");     // no token scanned again before the old ones.
+	}
+
+	@Test
+	void lineTerminators() {
+		String code = " MOVE A TO B.\r\n DISPLAY X.\r\n STOP RUN.\r\n";
+		IncrementalLexer lexer = new IncrementalLexer(new CobolLexer());
+		lexer.lex(new CodeReader(code.toCharArray()));
+		code = edit(lexer, CobolLexer::new, code, 14, 0, " ");        // between CR and LF.
+		code = edit(lexer, CobolLexer::new, code, 14, 1, "");
+		code = edit(lexer, CobolLexer::new, code, 13, 1, "");         // CR removed, LF alone.
+		code = edit(lexer, CobolLexer::new, code, 13, 0, "\r");
+		edit(lexer, CobolLexer::new, code, code.length(), 0, " END\r");
+	}
+
+	@Test
+	void javaLexer() {
+		String code = JAVA_CODE.repeat(100);
+		IncrementalLexer lexer = new IncrementalLexer(new JavaLexer());
+		lexer.lex(new CodeReader(code.toCharArray()));
+
+		int middle = JAVA_CODE.length() * 50;
+		code = edit(lexer, JavaLexer::new, code, middle + 3, 2, "ckage x.y.z;\nimport a");
+		Assertions.assertTrue(lexer.relexed() < 20);
+		edit(lexer, JavaLexer::new, code, middle + 20, 0, "// ");
+	}
+}
@@ -5,6 +5,8 @@ import fc.compiler.common.lexer.Lexer;
 import fc.compiler.common.lexer.LexerBase;
 import fc.compiler.common.token.Token;
 import fc.compiler.common.token.TokenKind;
+import fc.compiler.language.cobol.CobolCompilerOptions;
+import fc.compiler.language.cobol.CobolLexer;
 import fc.compiler.language.java.JavaLexer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +15,8 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 /**
  * @author FC
  */
@@ -20,7 +24,6 @@ public class LexerBaseTest {
 	protected Token codeToToken(String code, Lexer lexer) {
 		CodeReader reader = new CodeReader(code.toCharArray());
 		reader.sp = reader.bp;
-		reader.newPosition();
 		return lexer.scan(reader);
 	}
 
@@ -48,4 +51,65 @@ public class LexerBaseTest {
 	@Test
 	void scan() {
 	}
+
+	@Test
+	void switchDispatch() {
+		List<String> expected = CodeReaderTest.readerToTokens(new CodeReader(DfaLexerTest.JAVA_CODE.toCharArray()), new JavaLexer());
+		List<String> actual = CodeReaderTest.readerToTokens(new CodeReader(DfaLexerTest.JAVA_CODE.toCharArray()),
+				new JavaLexer().switchDispatch(true));
+		assertEquals(expected, actual);
+
+		CobolCompilerOptions options = new CobolCompilerOptions();
+		options.switchDispatch = true;
+		expected = CodeReaderTest.readerToTokens(new CodeReader(DfaLexerTest.COBOL_MORE.toCharArray()), new CobolLexer());
+		actual = CodeReaderTest.readerToTokens(new CodeReader(DfaLexerTest.COBOL_MORE.toCharArray()), new CobolLexer(options));
+		assertEquals(expected, actual);
+	}
+
+	/** every ASCII character, alone and before the characters which continue a token, by the mapper and by the switch. */
+	@Test
+	void switchDispatchAscii() {
+		CobolCompilerOptions options = new CobolCompilerOptions();
+		options.switchDispatch = true;
+		// the lexers are reused, so their states change alike.
+		Lexer javaMapper = new JavaLexer(), javaSwitch = new JavaLexer().switchDispatch(true);
+		Lexer cobolMapper = new CobolLexer(), cobolSwitch = new CobolLexer(options);
+		for (char c = 0; c < 128; c++) {
+			for (String next : new String[] {"", "a", "1", "=", ".", "-", "*", "/", " ", "\n", String.valueOf(c)}) {
+				String code = c + next + " x";
+				assertEquals(scanAll(code, javaMapper), scanAll(code, javaSwitch), () -> "Java " + code.chars().boxed().toList());
+				assertEquals(scanAll(code, cobolMapper), scanAll(code, cobolSwitch), () -> "COBOL " + code.chars().boxed().toList());
+			}
+		}
+	}
+
+	/** the tokens until EOF, null or a bound, with their offsets. */
+	static List<String> scanAll(String code, Lexer lexer) {
+		List<String> tokens = new ArrayList<>();
+		CodeReader reader = new CodeReader(code.toCharArray());
+		for (int i = 0; i < 16; i++) {
+			Token t;
+			try {
+				t = lexer.scan(reader);
+			} catch (RuntimeException e) {
+				tokens.add(e.getClass().getSimpleName());
+				break;
+			}
+			tokens.add(t + "@" + (t == null ? "" : t.offset()) + ":" + reader.bp);
+			if (t == null || t.kind() == TokenKind.EOF) break;
+		}
+		return tokens;
+	}
+
+	@Test
+	void lexemeView() {
+		List<Token> tokens = codeToTokens("a  // comment\n", new JavaLexer());
+		Token whiteSpaces = tokens.get(1), comment = tokens.get(2);
+		assertEquals(TokenKind.WHITE_SPACES, whiteSpaces.kind());
+		assertInstanceOf(LexemeView.class, whiteSpaces.lexemeView());
+		assertInstanceOf(LexemeView.class, comment.lexemeView());
+		assertEquals(2, whiteSpaces.lexemeView().length());
+		assertEquals("  ", whiteSpaces.lexeme());
+		assertInstanceOf(String.class, whiteSpaces.lexemeView());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package fc.compiler.common.lexer;
+
+import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenKind;
+import fc.compiler.language.cobol.CobolLexer;
+import fc.compiler.language.cobol.FixedFormatCodeReader;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lex a fixed-format COBOL source with each backend of RunScanner, and scan only its runs, e.g.
+ * java --add-modules jdk.incubator.vector -cp core/target/classes:core/target/test-classes:... fc.compiler.common.lexer.RunScannerBenchmark
+ * Without the module, the vector backend is left out.
+ * @author FC
+ */
+public class RunScannerBenchmark {
+	static final String[] CARDS = {
+			"       IDENTIFICATION DIVISION.",
+			"      * THE CUSTOMER MASTER FILE IS READ AND THE TOTALS ARE PRINTED.",
+			"           MOVE WS-CUSTOMER-NAME          TO OUT-NAME.",
+			"           DISPLAY 'CUSTOMER RECORD COUNT IS ' WS-COUNT.",
+			"",
+			"           IF WS-AMOUNT > 1000",
+			"               ADD 1 TO WS-COUNT",
+			"           END-IF.",
+	};
+
+	/** cards of 80 columns: sequence numbers, text padded to column 72, and identification. */
+	static char[] fixedFormatSource(int lines) {
+		StringBuilder sb = new StringBuilder(lines * 81);
+		for (int i = 0; i < lines; i++) {
+			String text = CARDS[i % CARDS.length];
+			text = text.isEmpty() ? "" : text.substring(6);
+			sb.append(String.format("%06d", (i + 1) * 10 % 1000000));
+			sb.append(String.format("%-66s", text));
+			sb.append("PROG0001\n");
+		}
+		return sb.toString().toCharArray();
+	}
+
+	static int lex(char[] code, RunScanner runs, CobolLexer lexer) {
+		FixedFormatCodeReader reader = new FixedFormatCodeReader(code);
+		reader.runs = runs;
+		int count = 0;
+		Token token;
+		while ((token = lexer.scan(reader)) != null && token.kind() != TokenKind.EOF) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * only the runs as the lexer scans them: the white spaces, e.g. the blank area to column 72,
+	 * the comment lines and the bodies of literals. The words between the runs are stepped over one by one.
+	 */
+	static int scanRuns(char[] code, RunScanner runs) {
+		int count = 0;
+		for (int i = 0; i < code.length; count++) {
+			i = runs.skipWhitespace(code, i, code.length);
+			if (i == code.length) break;
+			char c = code[i];
+			if (c == '*' || c == '\'') {
+				i = runs.indexOfAny(code, i + 1, code.length, '\'', '\'', Constants.CR, Constants.LF) + 1;
+			} else {
+				while (++i < code.length && code[i] != ' ' && code[i] != '\n') ;
+			}
+		}
+		return count;
+	}
+
+	public static void main(String[] args) {
+		char[] code = fixedFormatSource(args.length > 0 ? Integer.parseInt(args[0]) : 200_000);
+		Map<String, RunScanner> backends = new LinkedHashMap<>();
+		backends.put("scalar", new RunScanner());
+		backends.put("swar", new SwarRunScanner());
+		if (RunScanner.get().getClass() != SwarRunScanner.class) {
+			backends.put("vector", RunScanner.get());
+		}
+		CobolLexer lexer = new CobolLexer();
+		lexer.skipTrivia = true;
+		Map<String, long[]> best = new LinkedHashMap<>();     // the best nanos of lexing and of runs.
+		for (int round = 0; round < 10; round++) {
+			for (Map.Entry<String, RunScanner> backend : backends.entrySet()) {
+				long[] nanos = best.computeIfAbsent(backend.getKey(), key -> new long[] {Long.MAX_VALUE, Long.MAX_VALUE});
+				long start = System.nanoTime();
+				lex(code, backend.getValue(), lexer);
+				nanos[0] = Math.min(nanos[0], System.nanoTime() - start);
+				start = System.nanoTime();
+				scanRuns(code, backend.getValue());
+				nanos[1] = Math.min(nanos[1], System.nanoTime() - start);
+			}
+		}
+		System.out.printf("%d characters in %d cards%n", code.length, code.length / 81);
+		best.forEach((name, nanos) -> System.out.printf("%-6s lex %6.2f ns/char, runs %6.2f ns/char%n",
+				name, (double) nanos[0] / code.length, (double) nanos[1] / code.length));
+	}
+}
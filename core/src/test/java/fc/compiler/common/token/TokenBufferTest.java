@@ -0,0 +1,150 @@
+package fc.compiler.common.token;
+
+import fc.compiler.common.lexer.CodeReader;
+import fc.compiler.language.cobol.CobolLexer;
+import fc.compiler.language.cobol.FixedFormatCodeReader;
+import fc.compiler.language.java.JavaLexer;
+import fc.compiler.language.java.JavaTokenKind;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author FC
+ */
+public class TokenBufferTest {
+	static final String JAVA = "int a = 0x1F; // one\nlong b = 12_345L;  a += b * 123456789012345678901234567890L;\n";
+
+	static List<Token> scan(String code) {
+		List<Token> tokens = new ArrayList<>();
+		JavaLexer lexer = new JavaLexer();
+		CodeReader reader = new CodeReader(code.toCharArray());
+		Token t;
+		do {
+			t = lexer.scan(reader);
+			tokens.add(t);
+		} while (!TokenKind.EOF.equals(t.kind()));
+		return tokens;
+	}
+
+	static void assertSameToken(Token expected, Token actual) {
+		assertEquals(expected.kind(), actual.kind());
+		assertEquals(expected.kindId(), actual.kindId());
+		assertEquals(expected.lexeme(), actual.lexeme());
+		assertEquals(expected.offset(), actual.offset());
+		assertEquals(expected.position().toString(), actual.position().toString());
+		assertEquals(expected.radix(), actual.radix());
+		assertEquals(expected.value(), actual.value());
+		assertEquals(expected.scale(), actual.scale());
+		assertEquals(expected.overflow(), actual.overflow());
+		if (expected.radix() != 0) {
+			assertEquals(expected.decimalValue(), actual.decimalValue());
+		}
+	}
+
+	@Test
+	void tokenRoundTrip() {
+		List<Token> tokens = scan(JAVA);
+		TokenBuffer buffer = TokenBuffer.of(new JavaLexer(), new CodeReader(JAVA.toCharArray()));
+		assertEquals(tokens.size(), buffer.size());
+		for (int i = 0; i < tokens.size(); i++) {
+			assertSameToken(tokens.get(i), buffer.token(i));
+			assertEquals(tokens.get(i).lexeme(), buffer.lexeme(i));
+		}
+		assertTrue(tokens.stream().anyMatch(Token::overflow));
+	}
+
+	@Test
+	void triviaInSource() {
+		char[] code = JAVA.toCharArray();
+		TokenBuffer inSource = TokenBuffer.of(new JavaLexer(), new CodeReader(code));
+		TokenBuffer copied = new TokenBuffer();
+		for (Token t : scan(JAVA)) {
+			copied.add(t);
+		}
+		assertTrue(inSource.textSize < copied.textSize);     // no white space or comment in the pool.
+		for (int i = 0; i < copied.size(); i++) {
+			assertEquals(copied.lexeme(i), inSource.lexeme(i));
+			assertEquals(copied.token(i).lexeme(), inSource.token(i).lexeme());
+			if (copied.lexeme(i) != null) {
+				assertTrue(inSource.lexemeEquals(i, copied.lexeme(i)));
+				assertEquals(copied.lexemeChar(i, 0), inSource.lexemeChar(i, 0));
+			}
+		}
+
+		// a fixed-format reader skips the sequence area inside a lexeme, so all lexemes are copied.
+		String card = "000100     DISPLAY 'A'.                                                  SAMPLE01\n";
+		TokenBuffer fixed = TokenBuffer.of(new CobolLexer(), new FixedFormatCodeReader(card.toCharArray()));
+		for (int i = 0; i < fixed.size(); i++) {
+			assertEquals(0, fixed.flags[i] & TokenBuffer.IN_SOURCE);
+		}
+	}
+
+	@Test
+	void cursor() {
+		TokenBuffer buffer = TokenBuffer.of(new JavaLexer(), new CodeReader(JAVA.toCharArray()));
+		TokenBuffer.Cursor cursor = buffer.cursor().index(-1);
+		int count = 0;
+		while (cursor.hasNext()) {
+			cursor.next();
+			assertEquals(buffer.kindId(cursor.index()), cursor.kindId());
+			assertEquals(buffer.kind(cursor.index()), cursor.kind());
+			assertEquals(buffer.offset(cursor.index()), cursor.offset());
+			assertEquals(buffer.lexeme(cursor.index()), cursor.lexeme());
+			assertSameToken(buffer.token(cursor.index()), cursor.token());
+			count++;
+		}
+		assertEquals(buffer.size(), count);
+		assertTrue(buffer.cursor().index(0).lexemeEquals("int"));
+		assertTrue(buffer.cursor().index(0).is(TokenSet.of(JavaTokenKind.INT)));
+	}
+
+	@Test
+	void truncateAndCompact() {
+		char[] code = JAVA.toCharArray();
+		TokenBuffer buffer = new TokenBuffer();
+		for (Token t : scan(JAVA)) {
+			buffer.add(t);
+		}
+		int size = buffer.size();
+		buffer.truncate(size - 1);
+		assertEquals(size - 1, buffer.size());
+		assertEquals(";", buffer.lexeme(buffer.size() - 2));
+
+		// replace the first token again and again, until the dead text is compacted.
+		List<String> expected = new ArrayList<>();
+		List<Token> expectedTokens = new ArrayList<>();
+		for (int i = 0; i < buffer.size(); i++) {
+			expected.add(buffer.lexeme(i));
+			expectedTokens.add(buffer.token(i));
+		}
+		Token first = scan(JAVA).get(0);
+		int compactions = 0;
+		for (int round = 0; round < 200; round++) {
+			TokenBuffer other = new TokenBuffer(16);
+			other.add(first);
+			int textSize = buffer.textSize;
+			buffer.replace(0, 1, other, 0);
+			if (buffer.textSize < textSize) compactions++;
+		}
+		assertTrue(compactions > 0);
+		assertTrue(buffer.deadText <= buffer.textSize / 2);
+		for (int i = 0; i < buffer.size(); i++) {
+			assertEquals(expected.get(i), buffer.lexeme(i));
+			assertSameToken(expectedTokens.get(i), buffer.token(i));
+		}
+		assertEquals(new String(code, 0, 3), buffer.token(0).lexeme());
+
+		// one more token in front, so the number literals move with their values.
+		TokenBuffer two = new TokenBuffer(16);
+		two.add(first);
+		two.add(first);
+		buffer.replace(0, 1, two, 0);
+		for (int i = 1; i < expectedTokens.size(); i++) {
+			assertSameToken(expectedTokens.get(i), buffer.token(i + 1));
+		}
+	}
+}
@@ -1,14 +1,23 @@
 package fc.compiler.language.cobol;
 
+import fc.compiler.common.lexer.CodeReader;
 import fc.compiler.common.lexer.IdentifierLexer;
+import fc.compiler.common.lexer.KeywordMatcher;
+import fc.compiler.common.lexer.ParallelLexer;
 import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenBuffer;
+import fc.compiler.common.token.TriviaTable;
 import fc.compiler.common.lexer.LexerBaseTest;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import static fc.compiler.common.token.TokenKind.*;
+
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author FC
@@ -61,4 +70,147 @@ class CobolLexerTest extends LexerBaseTest {
 	@Test
 	void numberLiteral() {
 	}
-}
\ No newline at end of file
+
+	/** a card image line: sequence area, indicator area, Area A and B padded to column 72, identification area. */
+	static String card(int seq, char indicator, String text) {
+		return String.format("%06d%c%-65sSAMPLE%02d\n", seq, indicator, text, seq);
+	}
+
+	@Test
+	void fixedFormat() {
+		String code = card(1, ' ', "IDENTIFICATION DIVISION.")
+				+ card(2, '*', "COMMENT LINE")
+				+ card(3, ' ', "PROCEDURE DIVISION.")
+				+ card(4, ' ', "    DISPLAY \"HELLO,")
+				+ card(5, '-', "    \" COBOL\".")
+				+ card(6, ' ', "    MOVE WS-VER")
+				+ card(7, '-', "        SION TO X.")
+				+ card(8, 'D', "    DISPLAY \"DEBUG\".");
+		CodeReader reader = new FixedFormatCodeReader(code.toCharArray());
+		CobolLexer lexer = new CobolLexer();
+		List<Token> tokens = new ArrayList<>();
+		for (Token t = lexer.scan(reader); t.kind() != EOF; t = lexer.scan(reader)) {
+			if (t.kind() != WHITE_SPACES && t.kind() != LINE_TERMINATOR) {
+				tokens.add(t);
+			}
+		}
+
+		String literal = String.format("%-53s", "\"HELLO,") + " COBOL\"";
+		List<String> lexemes = tokens.stream().map(t -> t.lexeme().strip()).toList();
+		Assertions.assertEquals(List.of("IDENTIFICATION", "DIVISION", ".", "*COMMENT LINE", "PROCEDURE", "DIVISION", ".",
+				"DISPLAY", literal, ".", "MOVE", "WS-VERSION", "TO", "X", ".", "D    DISPLAY \"DEBUG\"."), lexemes);
+		Assertions.assertEquals("(4, 12)", tokens.get(7).position().toString());
+		Assertions.assertEquals("(6, 17)", tokens.get(11).position().toString());
+	}
+
+	@Test
+	void keywords() {
+		CobolLexer.initReservedKeywords();
+		KeywordMatcher matcher = new KeywordMatcher(reservedKeywords);
+		for (String keyword : reservedKeywords.keySet()) {
+			for (String code : new String[] { keyword, keyword.toLowerCase() }) {
+				CodeReader reader = new CodeReader((code + " ").toCharArray());
+				reader.bp = code.length();
+				Assertions.assertEquals(reservedKeywords.get(keyword), matcher.kind(reader), code);
+			}
+		}
+		for (String code : new String[] { "WS-VERSION", "DISPLAYS", "DISPLA", "X", "" }) {
+			CodeReader reader = new CodeReader((code + " ").toCharArray());
+			reader.bp = code.length();
+			Assertions.assertNull(matcher.kind(reader), code);
+		}
+
+		List<Token> tokens = codeToTokens(" DISPLAY display Ws-X WS-X Ws-X", new CobolLexer());
+		Assertions.assertSame(CobolTokenKind.DISPLAY, tokens.get(1).lexeme());
+		Assertions.assertEquals(CobolTokenKind.DISPLAY, tokens.get(3).kind());
+		Assertions.assertEquals("display", tokens.get(3).lexeme());
+		Assertions.assertSame(tokens.get(5).lexeme(), tokens.get(9).lexeme());
+		Assertions.assertEquals("WS-X", tokens.get(7).lexeme());
+	}
+
+	@Test
+	void skipTrivia() {
+		String code = card(1, ' ', "IDENTIFICATION DIVISION.")
+				+ card(2, '*', "COMMENT LINE")
+				+ card(3, ' ', "PROCEDURE DIVISION.   ")
+				+ card(4, 'D', "    DISPLAY \"DEBUG\".")
+				+ card(5, ' ', "    MOVE WS-VER")
+				+ card(6, '-', "        SION TO X.");
+		List<String> expected = new ArrayList<>();
+		List<Token> trivia = new ArrayList<>();
+		CobolLexer lexer = new CobolLexer();
+		CodeReader reader = new FixedFormatCodeReader(code.toCharArray());
+		for (Token t = lexer.scan(reader); t.kind() != EOF; t = lexer.scan(reader)) {
+			if (List.of(WHITE_SPACES, LINE_TERMINATOR, LINE_COMMENT, "IGNORED DEBUG CODE").contains(t.kind())) {
+				trivia.add(t);
+			} else {
+				expected.add(t.toString());
+			}
+		}
+
+		TriviaTable table = new TriviaTable();
+		lexer = new CobolLexer();
+		lexer.skipTrivia(true).trivia(table);
+		reader = new FixedFormatCodeReader(code.toCharArray());
+		List<String> actual = new ArrayList<>();
+		for (Token t = lexer.scan(reader); t.kind() != EOF; t = lexer.scan(reader)) {
+			actual.add(t.toString());
+		}
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertEquals(trivia.size(), table.size());
+		for (int i = 0; i < trivia.size(); i++) {
+			Assertions.assertEquals(trivia.get(i).kind(), table.kind(i));
+			Assertions.assertEquals(trivia.get(i).offset(), table.offset(i));
+		}
+	}
+
+	@Test
+	void parallelLexer() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 300; i += 6) {
+			sb.append(card(i + 1, ' ', "    DISPLAY \"HELLO,"))
+					.append(card(i + 2, '-', "    \" COBOL\"."))
+					.append(card(i + 3, '*', "COMMENT LINE"))
+					.append(card(i + 4, ' ', "    MOVE WS-VER"))
+					.append(card(i + 5, '-', "        SION TO X."))
+					.append(card(i + 6, 'D', "    DISPLAY \"DEBUG\"."));
+		}
+		char[] code = sb.toString().toCharArray();
+		CobolCompilerOptions options = new CobolCompilerOptions();
+		options.fixedFormat = true;
+		TokenBuffer expected = TokenBuffer.of(new CobolLexer(options), new FixedFormatCodeReader(code));
+		ParallelLexer lexer = CobolLexer.parallelLexer(options).chunkSize(500).pool(new ForkJoinPool(4));
+		TokenBuffer actual = lexer.lex(code, null);
+
+		Assertions.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assertions.assertEquals(expected.kind(i), actual.kind(i));
+			Assertions.assertEquals(expected.lexeme(i), actual.lexeme(i));
+			Assertions.assertEquals(expected.position(i).toString(), actual.position(i).toString());
+		}
+	}
+
+	@Test
+	void nationalWord() {
+		List<Token> tokens = codeToTokens(" MOVE 顧客-名 TO ＷＳ１.", new CobolLexer());
+		Assertions.assertEquals(IDENTIFIER, tokens.get(3).kind());
+		Assertions.assertEquals("顧客-名", tokens.get(3).lexeme());
+		Assertions.assertEquals(IDENTIFIER, tokens.get(7).kind());
+		Assertions.assertEquals("ＷＳ１", tokens.get(7).lexeme());
+	}
+
+	@Test
+	void nationalPunctuation() {
+		// fullwidth parentheses and equal sign end a word as their halfwidth forms.
+		List<Token> tokens = codeToTokens(" 顧客（１） Ａ＝Ｂ ｶﾅ－ﾒｲ", new CobolLexer());
+		Assertions.assertEquals("顧客", tokens.get(1).lexeme());
+		Assertions.assertEquals(IDENTIFIER, tokens.get(1).kind());
+		Assertions.assertEquals("（", tokens.get(2).lexeme());
+		Assertions.assertEquals("１", tokens.get(3).lexeme());
+		Assertions.assertEquals("）", tokens.get(4).lexeme());
+		Assertions.assertEquals("Ａ", tokens.get(6).lexeme());
+		Assertions.assertEquals("＝", tokens.get(7).lexeme());
+		Assertions.assertEquals("Ｂ", tokens.get(8).lexeme());
+		Assertions.assertEquals("ｶﾅ－ﾒｲ", tokens.get(10).lexeme());
+	}
+}
@@ -2,13 +2,34 @@ package fc.compiler.language.cobol;
 
 import fc.compiler.common.ast.AstNode;
 import fc.compiler.common.ast.CompositeStatement;
+import fc.compiler.common.ast.Expression;
+import fc.compiler.common.ast.Statement;
+import fc.compiler.common.ast.expression.Assignment;
+import fc.compiler.common.ast.expression.BinaryExpression;
+import fc.compiler.common.ast.expression.Identifier;
+import fc.compiler.common.ast.expression.PrefixUnaryExpression;
+import fc.compiler.common.ast.statement.ErrorStatement;
+import fc.compiler.common.ast.statement.ExpressionStatement;
 import fc.compiler.common.ast.statement.IfStatement;
 import fc.compiler.common.lexer.CodeReader;
 import fc.compiler.common.parser.Parser;
+import fc.compiler.common.parser.ParserRegistry;
+import fc.compiler.common.parser.PredictiveTable;
 import fc.compiler.common.parser.TokenReader;
+import fc.compiler.common.token.Token;
+import fc.compiler.common.token.TokenBuffer;
+import fc.compiler.common.token.TokenKind;
+import fc.compiler.common.token.TokenKinds;
+import fc.compiler.common.token.TokenSet;
 import fc.compiler.language.cobol.ast.CobolProgram;
+import fc.compiler.language.cobol.ast.clause.DataDescriptionEntry;
+import fc.compiler.language.cobol.ast.division.WorkingStorageSection;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 /**
  * @author FC
  */
@@ -16,7 +37,6 @@ public class CobolParserTest {
 	protected AstNode codeToAst(String code, Parser parser) {
 		CodeReader reader = new CodeReader(code.toCharArray());
 		reader.sp = reader.bp;
-		reader.newPosition();
 		TokenReader tokenReader = new TokenReader(new CobolLexer(), reader);
 //		CobolParser mainParser = new CobolParser();
 		return parser.parse(tokenReader, CobolParser.initRegistry());
@@ -77,8 +97,199 @@ public class CobolParserTest {
 		System.out.println(statement);
 	}
 
+	@Test
+	void tokenSet() {
+		TokenSet literals = CobolParser.LITERALS;
+		assertTrue(literals.contains(TokenKind.NUMBER_LITERAL));
+		assertFalse(literals.contains(TokenKind.IDENTIFIER));
+		assertEquals(TokenKind.STRING_LITERAL, TokenKinds.name(TokenKinds.id(TokenKind.STRING_LITERAL)));
+		assertTrue(literals.with(CobolTokenKind.ZERO).contains(CobolTokenKind.ZERO));
+
+		TokenReader tokenReader = new TokenReader(new CobolLexer(), new CodeReader(" DISPLAY 'M'.".toCharArray()));
+		assertTrue(tokenReader.isKind(TokenKinds.id(CobolTokenKind.DISPLAY)));
+		assertNotNull(CobolParser.initRegistry().get(tokenReader.token()));
+		tokenReader.nextToken();
+		assertTrue(tokenReader.isKindAnyOf(literals));
+	}
+
+	@Test
+	void tokenBuffer() {
+		String code = " 01 BIRTH-DAY.\n"
+				+ "     05 YYYY      PIC 9(4).\n"
+				+ "     DISPLAY \"hello, COBOL!\".\n";
+		TokenBuffer buffer = TokenBuffer.of(new CobolLexer(), new CodeReader(code.toCharArray()));
+		TokenReader expected = new TokenReader(new CobolLexer(), new CodeReader(code.toCharArray()));
+		TokenReader actual = new TokenReader(buffer);
+		do {
+			Token e = expected.token(), a = actual.token();
+			assertEquals(e.kind(), a.kind());
+			assertEquals(e.lexeme(), a.lexeme());
+			assertEquals(e.position().toString(), a.position().toString());
+			expected.nextToken();
+			actual.nextToken();
+		} while (!expected.isKind(TokenKind.EOF));
+		assertTrue(actual.isKind(TokenKind.EOF));
+
+		TokenBuffer.Cursor cursor = buffer.cursor();
+		assertTrue(cursor.lexemeEquals(" "));
+		assertTrue(cursor.next().lexemeEquals("01"));
+		assertEquals(TokenKind.NUMBER_LITERAL, cursor.kind());
+		assertEquals(2, cursor.position().getColumn());
+	}
+
+	@Test
+	void markReset() {
+		StringBuilder code = new StringBuilder();
+		for (int i = 0; i < 40; i++) code.append(" DISPLAY X").append(i);
+		TokenReader tokenReader = new TokenReader(new CobolLexer(), new CodeReader(code.toString().toCharArray()));
+		assertEquals("X39", tokenReader.peekToken(79).lexeme());    // more than the initial ring.
+		tokenReader.nextToken();
+		int mark = tokenReader.mark();
+		tokenReader.nextTokens(50);
+		assertEquals("X25", tokenReader.token().lexeme());
+		tokenReader.reset(mark);
+		assertEquals("X0", tokenReader.token().lexeme());
+		assertEquals(1, tokenReader.position());
+
+		tokenReader.release(tokenReader.mark());
+		tokenReader.nextToken();
+		assertTrue(tokenReader.isKind(CobolTokenKind.DISPLAY, TokenKind.IDENTIFIER));
+		assertThrows(IllegalArgumentException.class, () -> tokenReader.reset(mark));
+
+		int outer = tokenReader.mark();
+		tokenReader.nextTokens(4);
+		int inner = tokenReader.mark();
+		tokenReader.nextTokens(4);
+		tokenReader.reset(outer);       // releases the inner mark too, so the consumed tokens are dropped again.
+		tokenReader.nextTokens(10);
+		assertThrows(IllegalArgumentException.class, () -> tokenReader.reset(inner));
+	}
+
+	@Test
+	void combinedCondition() {
+		ParserRegistry registry = CobolParser.initRegistry();
+		String code = " A > 1 AND < 5 OR B = 2 OR 3 DISPLAY 'X'.";
+		TokenReader tokenReader = new TokenReader(new CobolLexer(), new CodeReader(code.toCharArray()));
+		BinaryExpression condition = (BinaryExpression) CobolParser.parseConditionalExpression(tokenReader, registry);
+		assertEquals("OR", condition.operator());
+		BinaryExpression abbreviated = (BinaryExpression) ((BinaryExpression) ((BinaryExpression) condition.leftOperand())
+				.leftOperand()).rightOperand();
+		assertEquals("<", abbreviated.operator());
+		assertEquals("A", ((Identifier) abbreviated.leftOperand()).id());
+		assertEquals("=", ((BinaryExpression) condition.rightOperand()).operator());
+		assertTrue(tokenReader.isKind(CobolTokenKind.DISPLAY));
+		assertEquals(0, tokenReader.errors());
+	}
+
+	@Test
+	void negatedCondition() {
+		TokenReader tokenReader = new TokenReader(new CobolLexer(), new CodeReader(" A = 1 AND NOT B = 2 DISPLAY".toCharArray()));
+		BinaryExpression and = (BinaryExpression) CobolParser.parseConditionalExpression(tokenReader, CobolParser.initRegistry());
+		PrefixUnaryExpression not = (PrefixUnaryExpression) and.rightOperand();
+		assertEquals("NOT", not.operator());
+		assertEquals("B", ((Identifier) ((BinaryExpression) not.expression()).leftOperand()).id());
+		assertTrue(tokenReader.isKind(CobolTokenKind.DISPLAY));
+		assertEquals(0, tokenReader.errors());
+
+		tokenReader = new TokenReader(new CobolLexer(), new CodeReader(" A > 1 AND NOT < 5 DISPLAY".toCharArray()));
+		and = (BinaryExpression) CobolParser.parseConditionalExpression(tokenReader, CobolParser.initRegistry());
+		BinaryExpression abbreviated = (BinaryExpression) and.rightOperand();
+		assertEquals(">=", abbreviated.operator());
+		assertEquals("A", ((Identifier) abbreviated.leftOperand()).id());
+		assertTrue(tokenReader.isKind(CobolTokenKind.DISPLAY));
+		assertEquals(0, tokenReader.errors());
+
+		tokenReader = new TokenReader(new CobolLexer(), new CodeReader(" A IS NOT 5 DISPLAY".toCharArray()));
+		CobolParser.parseConditionalExpression(tokenReader, CobolParser.initRegistry());
+		assertEquals(1, tokenReader.errors());      // no relational operator after NOT.
+	}
+
+	@Test
+	void arithmeticExpression() {
+		String code = " COMPUTE X = " + "(".repeat(5000) + "A" + ")".repeat(5000) + " - B - -C * 2 ** 3 ** 2.";
+		TokenReader tokenReader = new TokenReader(new CobolLexer(), new CodeReader(code.toCharArray()));
+		ExpressionStatement statement = CobolParser.parseComputeStatement(tokenReader, CobolParser.initRegistry());
+		assertTrue(tokenReader.isKind(CobolTokenKind.SEPARATOR_PERIOD));
+
+		BinaryExpression minus = (BinaryExpression) ((Assignment) statement.expression()).expression();
+		assertEquals("-", minus.operator());
+		assertEquals("-", ((BinaryExpression) minus.leftOperand()).operator());     // left associative.
+		BinaryExpression star = (BinaryExpression) minus.rightOperand();
+		assertEquals("*", star.operator());
+		assertEquals("-", ((PrefixUnaryExpression) star.leftOperand()).operator());
+		BinaryExpression power = (BinaryExpression) star.rightOperand();
+		assertEquals("**", power.operator());
+		assertEquals("**", ((BinaryExpression) power.rightOperand()).operator());   // right associative.
+		assertEquals(0, tokenReader.errors());
+
+		tokenReader = new TokenReader(new CobolLexer(), new CodeReader(" COMPUTE X = (A + (B * 2).".toCharArray()));
+		CobolParser.parseComputeStatement(tokenReader, CobolParser.initRegistry());
+		assertEquals(1, tokenReader.errors());      // the unclosed parenthesis.
+	}
+
 	@Test
 	void parseDataDescriptionEntry() {
+		String code = " 01 INPUT-NUM PIC S9(4) VALUE ZERO.\n 05 MM IF 99.\n";
+		TokenReader tokenReader = new TokenReader(new CobolLexer(), new CodeReader(code.toCharArray()));
+		ParserRegistry registry = CobolParser.initRegistry();
+		DataDescriptionEntry entry = CobolParser.parseDataDescriptionEntry(tokenReader, registry);
+		assertNotNull(entry.pictureClause());
+		assertEquals("ZERO", entry.valueClause().value());
+
+		assertNull(registry.get(CobolParser.DATA_ENTRY_CONTEXT, tokenReader.peekToken(2)));     // IF of procedure division.
+		entry = CobolParser.parseDataDescriptionEntry(tokenReader, registry);
+		assertNull(entry.pictureClause());
+		assertTrue(tokenReader.isKind(TokenKind.EOF));
+	}
+
+	@Test
+	void predictiveTable() {
+		PredictiveTable table = CobolParser.initRegistry().context(CobolParser.STATEMENT_CONTEXT);
+		assertTrue(table.first().contains(CobolTokenKind.COMPUTE));
+		assertFalse(table.first().contains(CobolTokenKind.PIC));
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> PredictiveTable.builder("test")
+				.rule("move-statement", TokenSet.of(CobolTokenKind.MOVE), CobolParser::parseMoveStatement)
+				.rule("literal", CobolParser.LITERALS.with(CobolTokenKind.MOVE), CobolParser::parseLiteral)
+				.build());
+		assertTrue(e.getMessage().contains("MOVE starts both move-statement and literal"), e.getMessage());
+	}
+
+	@Test
+	void errorRecovery() {
+		String code = " IDENTIFICATION DIVISION.\n"
+				+ " PROGRAM-ID. SAMPLE.\n"
+				+ " DATA DIVISION.\n"
+				+ " WORKING-STORAGE SECTION.\n"
+				+ " 01 A PIC 9(4) = = VALUE ZERO.\n"
+				+ " XX YY.\n"
+				+ " 01 B PIC 99.\n"
+				+ " PROCEDURE DIVISION.\n"
+				+ " MAIN-PARA.\n"
+				+ "     DISPLAY 'A' + + 1 2 3\n"
+				+ "     IF A > 1 ) ) END-IF\n"
+				+ "     CONTINUE.\n"
+				+ " NEXT-PARA.\n"
+				+ "     GO TO MAIN-PARA.\n";
+		for (TokenReader tokenReader : new TokenReader[] {
+				new TokenReader(new CobolLexer(), new CodeReader(code.toCharArray())),
+				new TokenReader(TokenBuffer.of(new CobolLexer(), new CodeReader(code.toCharArray())))}) {
+			CobolProgram program = CobolParser.parseCompilationUnit(tokenReader, CobolParser.initRegistry());
+			assertTrue(tokenReader.isKind(TokenKind.EOF));
+
+			WorkingStorageSection section = program.dataDivision().workingStorageSection();
+			assertEquals(2, section.variableDeclarations().size());
+			assertEquals(1, section.errors().size());
+			DataDescriptionEntry a = section.variableDeclarations().get(0);
+			assertEquals("ZERO", a.valueClause().value());
+			assertEquals(2, a.errors().get(0).skipped());
 
+			List<Statement> statements = program.procedureDivision().statements();
+			assertEquals(List.of("LabeledStatement", "DisplayClause", "ErrorStatement", "IfStatement",
+							"ContinueStatement", "LabeledStatement", "GotoStatement"),
+					statements.stream().map(stmt -> stmt.getClass().getSimpleName()).toList());
+			assertEquals(5, ((ErrorStatement) statements.get(2)).skipped());
+			assertEquals(2, ((ErrorStatement) ((IfStatement) statements.get(3)).thenStatement()).skipped());
+		}
 	}
 }
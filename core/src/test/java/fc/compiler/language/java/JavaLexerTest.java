@@ -2,10 +2,14 @@ package fc.compiler.language.java;
 
 import fc.compiler.common.token.Token;
 import fc.compiler.common.lexer.LexerBaseTest;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
 import java.util.List;
 
+import static fc.compiler.common.token.TokenKind.IDENTIFIER;
+
 /**
  * @author FC
  */
@@ -17,4 +21,29 @@ class JavaLexerTest extends LexerBaseTest {
 		tokenList.forEach(System.out::println);
 	}
 
-}
\ No newline at end of file
+
+	@Test
+	void numberValue() {
+		List<Token> tokens = codeToTokens("123.45 0x1F 017 0b101 0.5 123456789012345678901", new JavaLexer());
+		Assertions.assertEquals(12345, tokens.get(0).value());
+		Assertions.assertEquals(2, tokens.get(0).scale());
+		Assertions.assertEquals(31, tokens.get(2).value());
+		Assertions.assertEquals(16, tokens.get(2).radix());
+		Assertions.assertEquals(15, tokens.get(4).value());
+		Assertions.assertEquals(5, tokens.get(6).value());
+		Assertions.assertEquals(new BigDecimal("0.5"), tokens.get(8).decimalValue());
+		Assertions.assertTrue(tokens.get(10).overflow());
+		Assertions.assertEquals(new BigDecimal("123456789012345678901"), tokens.get(10).decimalValue());
+	}
+
+	@Test
+	void keyword() {
+		List<Token> tokens = codeToTokens("class Class classes 名前 null", new JavaLexer());
+		Assertions.assertEquals(JavaTokenKind.CLASS, tokens.get(0).kind());
+		Assertions.assertEquals(IDENTIFIER, tokens.get(2).kind());
+		Assertions.assertEquals(IDENTIFIER, tokens.get(4).kind());
+		Assertions.assertEquals("名前", tokens.get(6).lexeme());
+		Assertions.assertEquals(IDENTIFIER, tokens.get(6).kind());
+		Assertions.assertEquals(JavaTokenKind.NULL, tokens.get(8).kind());
+	}
+}